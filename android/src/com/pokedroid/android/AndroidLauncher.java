@@ -3,6 +3,7 @@ package com.pokedroid.android;
 import com.badlogic.gdx.backends.android.AndroidApplication;
 import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
 import com.pokedroid.PokeDroid;
+import com.pokedroid.util.ScaledFrameBuffer;
 
 import android.os.Bundle;
 
@@ -22,6 +23,7 @@ public class AndroidLauncher extends AndroidApplication {
 		super.onCreate(savedInstanceState);
 		AndroidApplicationConfiguration config = new AndroidApplicationConfiguration();
 		config.useWakelock = true;
+		ScaledFrameBuffer.setEnabled(true);
 		initialize(new PokeDroid(), config);
 	}
 }
@@ -5,9 +5,9 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.InputProcessor;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.files.FileHandle;
@@ -20,7 +20,11 @@ import com.pokedroid.input.OnscreenControls;
 import com.pokedroid.scene.Scene;
 import com.pokedroid.scene.SceneManager;
 import com.pokedroid.scene.SceneSplash;
+import com.pokedroid.story.PixmapDecoder;
 import com.pokedroid.story.Story;
+import com.pokedroid.story.StoryCatalog;
+import com.pokedroid.story.StoryLoader;
+import com.pokedroid.util.ScaledFrameBuffer;
 
 /**
  * <p>This is the core application, this is where the game logic will occur.</p>
@@ -32,49 +36,112 @@ import com.pokedroid.story.Story;
  */
 public class PokeDroid extends ApplicationAdapter implements InputProcessor {
 	public static final int VIRTUAL_WIDTH = 640;
+	public static final int LOADER_THREADS = 2;
+	public static final long UPLOAD_BUDGET = 4000000L;
 
 	public final Color clearColor = new Color(0f, 0f, 0f, 1f);
 
 	private SceneManager sceneManager;
 	private OnscreenControls controls;
-	private Story story;
-	private List<Story> storyList;
-	private int storyIndex;
+	private ScaledFrameBuffer frameBuffer;
+	private Story story, previousStory;
+	private StoryCatalog catalog;
+	private StoryLoader loader;
+	private int storyIndex, loadingIndex, queuedIndex = -1;
+	private ExecutorService executor;
+	private PixmapDecoder decoder;
 
 	@Override
 	public void create() {
 		if(Gdx.input.getInputProcessor() != null)
 			Gdx.input.setInputProcessor(new InputMultiplexer(Gdx.input.getInputProcessor(), this));
 		else Gdx.input.setInputProcessor(this);
+		if(ScaledFrameBuffer.isEnabled())
+			this.frameBuffer = new ScaledFrameBuffer(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 		if(Gdx.app.getType() == ApplicationType.Android || true)
 			this.controls = new OnscreenControls(this);
-		this.storyList = Collections.synchronizedList(new ArrayList<Story>());
+		this.executor = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "StoryLoader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.decoder = new PixmapDecoder();
+		this.catalog = new StoryCatalog();
 		JsonValue stories = new JsonReader().parse(Gdx.files.internal("storylist.json"));
 		for(int i = 0; i < stories.get("stories").size; i++)
-			this.storyList.add(new Story(Gdx.files.internal(stories.get("stories").getString(i))));
+			this.catalog.add(Gdx.files.internal(stories.get("stories").getString(i)));
 		for(FileHandle f : Gdx.files.external("PokeDroid/Story/").list()) {
 			if(f.isDirectory())
-				this.storyList.add(new Story(f));
+				this.catalog.add(f);
 			else if(f.toString().endsWith(".zip"))
-				this.storyList.add(new Story(f));
+				this.catalog.add(f);
 		}
-		System.out.println("Loaded " + storyList.size() + " stories.");
-		this.story = storyList.get(storyIndex);
+		System.out.println("Found " + catalog.size() + " stories.");
+		setStory(storyIndex);
 		sceneManager = new SceneManager(this);
 		sceneManager.push(new SceneSplash());
 	}
 
 	@Override
 	public void render() {
+		updateLoaders();
 		sceneManager.update(Gdx.graphics.getDeltaTime());
+		if(frameBuffer != null) {
+			frameBuffer.begin();
+			clear();
+			sceneManager.render();
+			frameBuffer.end();
+			clear();
+			frameBuffer.render();
+		} else {
+			clear();
+			sceneManager.render();
+		}
+		if(controls != null) controls.render();
+		if(previousStory != null) {
+			previousStory.dispose();
+			previousStory = null;
+		}
+	}
+
+	/**
+	 * <p>Gives the story being loaded a share of the frame to upload its textures,
+	 * once it has loaded it replaces the current story which is disposed at the end
+	 * of the frame, after the scenes have moved off its maps.</p>
+	 */
+	private void updateLoaders() {
+		if(loader == null || !loader.update(UPLOAD_BUDGET))
+			return;
+		Story loaded = loader.getStory();
+		loader = null;
+		if(loaded.isLoaded()) {
+			previousStory = story;
+			story = loaded;
+			storyIndex = loadingIndex;
+		} else {
+			loaded.dispose();
+		}
+		if(queuedIndex != -1) {
+			int index = queuedIndex;
+			queuedIndex = -1;
+			setStory(index);
+		}
+	}
+
+	/**
+	 * <p>Clears whatever is being drawn onto with the {@link PokeDroid#clearColor}.</p>
+	 */
+	private void clear() {
 		Gdx.gl.glClearColor(clearColor.r, clearColor.g, clearColor.b, clearColor.a);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		sceneManager.render();
-		if(controls != null) controls.render();
 	}
 
 	@Override
 	public void resize(int width, int height) {
+		if(frameBuffer != null) frameBuffer.resize(width, height);
 		if(controls != null) controls.resize(width, height);
 		Scene s = sceneManager.getCurrentScene();
 		if(s != null) s.resize(width, height);
@@ -83,7 +150,11 @@ public class PokeDroid extends ApplicationAdapter implements InputProcessor {
 	@Override
 	public void dispose() {
 		sceneManager.dispose();
-		story.dispose();
+		executor.shutdownNow();
+		decoder.dispose();
+		if(story != null) story.dispose();
+		if(previousStory != null) previousStory.dispose();
+		if(frameBuffer != null) frameBuffer.dispose();
 	}
 
 	/**
@@ -97,15 +168,24 @@ public class PokeDroid extends ApplicationAdapter implements InputProcessor {
 	}
 
 	/**
-	 * <p>Creates a camera using the {@link PokeDroid#VIRTUAL_WIDTH}.</p>
+	 * <p>Creates a camera using the {@link PokeDroid#VIRTUAL_WIDTH}, if the world is
+	 * rendered through a {@link ScaledFrameBuffer} the camera instead matches its size
+	 * so each pixel of the game is a pixel of the frame buffer.</p>
 	 * 
 	 * @param width The width of the screen.
 	 * @param height The height of the screen.
 	 * @return The camera just created.
 	 */
 	public OrthographicCamera createCamera(int width, int height) {
-		float f = ((float)height/(float)width);
-		OrthographicCamera camera = new OrthographicCamera(VIRTUAL_WIDTH, VIRTUAL_WIDTH*f);
+		OrthographicCamera camera;
+		if(ScaledFrameBuffer.isEnabled()) {
+			int scale = ScaledFrameBuffer.getScale(width);
+			camera = new OrthographicCamera(ScaledFrameBuffer.getBufferSize(width, scale),
+					ScaledFrameBuffer.getBufferSize(height, scale));
+		} else {
+			float f = ((float)height/(float)width);
+			camera = new OrthographicCamera(VIRTUAL_WIDTH, VIRTUAL_WIDTH*f);
+		}
 		camera.translate(camera.viewportWidth/2f, camera.viewportHeight/2f);
 		camera.update();
 		return camera;
@@ -166,23 +246,81 @@ public class PokeDroid extends ApplicationAdapter implements InputProcessor {
 	/**
 	 * <p>Gets the currently loaded {@code Story}.</p>
 	 * 
-	 * @return The currently loaded {@code Story}.
+	 * @return The currently loaded {@code Story}, or {@code null} until the first
+	 * story has loaded.
 	 */
 	public Story getLoadedStory() {
 		return this.story;
 	}
-	
-	public List<Story> getStoryList() {
-		return this.storyList;
+
+	/**
+	 * <p>Gets the {@code StoryLoader} of the story being switched to.</p>
+	 * 
+	 * @return The loader, or {@code null} if no story is being loaded.
+	 */
+	public StoryLoader getStoryLoader() {
+		return this.loader;
+	}
+
+	/**
+	 * <p>Gets the executor the background work of the game, such as loading
+	 * stories and maps, is run on.</p>
+	 * 
+	 * @return The executor.
+	 */
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * <p>Gets the catalog of stories that can be played.</p>
+	 * 
+	 * @return The {@link StoryCatalog}.
+	 */
+	public StoryCatalog getStoryCatalog() {
+		return this.catalog;
 	}
 	
+	/**
+	 * <p>Gets the index of the story being played, this only changes once a story
+	 * switched to has loaded.</p>
+	 * 
+	 * @return The index in the {@link StoryCatalog}.
+	 */
 	public int getStoryIndex() {
 		return this.storyIndex;
 	}
-	
+
+	/**
+	 * <p>Gets the index of the story that was last asked for, this is the story
+	 * being loaded or waiting to be loaded if there is one.</p>
+	 * 
+	 * @return The index in the {@link StoryCatalog}.
+	 */
+	public int getRequestedStoryIndex() {
+		if(queuedIndex != -1)
+			return queuedIndex;
+		return (loader != null) ? loadingIndex : storyIndex;
+	}
+
+	/**
+	 * <p>Switches to another story in the catalog, it is loaded in the background
+	 * and replaces the current story once it has loaded, the current story is then
+	 * disposed so only one story is held in memory. If a story is already loading
+	 * the index is queued and loaded next, replacing any index queued before it.</p>
+	 * 
+	 * @param index The index of the story in the {@link StoryCatalog}.
+	 */
 	public void setStory(int index) {
-		this.story = storyList.get(index);
-		this.storyIndex = index;
+		if(loader != null) {
+			this.queuedIndex = index;
+			return;
+		}
+		this.loadingIndex = index;
+		Story s = catalog.createStory(index);
+		s.setPixmapDecoder(decoder);
+		this.loader = new StoryLoader(executor, s);
+		this.loader.start();
 	}
 
 }
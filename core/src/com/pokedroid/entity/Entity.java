@@ -16,6 +16,8 @@ public abstract class Entity {
 	protected Vector3 position, velocity;
 	protected int tileX, tileY;
 	protected EntityDirection lookDirection;
+	/** <p>The stamps used by the {@link EntityRenderOrder} to find added and removed entities.</p> */
+	int listStamp, orderStamp;
 	
 	/**
 	 * <p>Constructor for a {@code Entity}.</p>
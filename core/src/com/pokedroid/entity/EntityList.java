@@ -0,0 +1,170 @@
+package com.pokedroid.entity;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * <p>An {@code EntityList} holds the entities of a map, it is only used on the game
+ * thread so it is iterated by index without taking a lock.</p>
+ *
+ * <p>Between {@link EntityList#begin()} and {@link EntityList#end()} the entities are
+ * being updated, any entity added or removed in that time, such as an {@link HumanEntity}
+ * walking onto another map, is held back until {@code end} so the entities do not
+ * move while they are being iterated.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class EntityList {
+
+	private Entity[] items;
+	private int size;
+	private int updating;
+	private final Array<Entity> pendingAdd, pendingRemove;
+
+	/**
+	 * <p>Constructor for an empty {@code EntityList}.</p>
+	 */
+	public EntityList() {
+		this.items = new Entity[16];
+		this.pendingAdd = new Array<Entity>(false, 4);
+		this.pendingRemove = new Array<Entity>(false, 4);
+	}
+
+	/**
+	 * <p>Adds an entity, if the entities are being updated then it is added
+	 * once the update has ended.</p>
+	 *
+	 * @param entity The entity to add.
+	 */
+	public void add(Entity entity) {
+		if(updating > 0) {
+			pendingRemove.removeValue(entity, true);
+			if(!pendingAdd.contains(entity, true))
+				pendingAdd.add(entity);
+		} else addNow(entity);
+	}
+
+	/**
+	 * <p>Removes an entity, if the entities are being updated then it is
+	 * removed once the update has ended.</p>
+	 *
+	 * @param entity The entity to remove.
+	 */
+	public void remove(Entity entity) {
+		if(updating > 0) {
+			pendingAdd.removeValue(entity, true);
+			if(!pendingRemove.contains(entity, true))
+				pendingRemove.add(entity);
+		} else removeNow(entity);
+	}
+
+	/**
+	 * <p>Starts updating the entities, changes are held back until the matching
+	 * {@link EntityList#end()}.</p>
+	 */
+	public void begin() {
+		updating++;
+	}
+
+	/**
+	 * <p>Stops updating the entities and applies the changes that were held back.</p>
+	 */
+	public void end() {
+		if(updating == 0)
+			throw new IllegalStateException("begin must be called before end.");
+		if(--updating > 0)
+			return;
+		for(int i = 0; i < pendingRemove.size; i++)
+			removeNow(pendingRemove.get(i));
+		for(int i = 0; i < pendingAdd.size; i++)
+			addNow(pendingAdd.get(i));
+		pendingRemove.clear();
+		pendingAdd.clear();
+	}
+
+	/**
+	 * <p>Adds an entity straight away, an entity is only added once.</p>
+	 *
+	 * @param entity The entity to add.
+	 */
+	private void addNow(Entity entity) {
+		if(indexOf(entity) != -1)
+			return;
+		if(size == items.length) {
+			Entity[] grown = new Entity[size*2];
+			System.arraycopy(items, 0, grown, 0, size);
+			items = grown;
+		}
+		items[size++] = entity;
+	}
+
+	/**
+	 * <p>Removes an entity straight away, keeping the order of the rest.</p>
+	 *
+	 * @param entity The entity to remove.
+	 */
+	private void removeNow(Entity entity) {
+		int i = indexOf(entity);
+		if(i == -1)
+			return;
+		System.arraycopy(items, i+1, items, i, size-i-1);
+		items[--size] = null;
+	}
+
+	/**
+	 * <p>Gets the index of an entity.</p>
+	 *
+	 * @param entity The entity.
+	 * @return The index, or {@code -1} if the entity is not in the list.
+	 */
+	public int indexOf(Entity entity) {
+		for(int i = 0; i < size; i++)
+			if(items[i] == entity)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * <p>Gets whether an entity is in the list, entities waiting to be added
+	 * are not counted until they are added.</p>
+	 *
+	 * @param entity The entity.
+	 * @return Whether the entity is in the list.
+	 */
+	public boolean contains(Entity entity) {
+		return indexOf(entity) != -1;
+	}
+
+	/**
+	 * <p>Gets an entity.</p>
+	 *
+	 * @param index The index of the entity.
+	 * @return The entity.
+	 */
+	public Entity get(int index) {
+		if(index >= size)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		return items[index];
+	}
+
+	/**
+	 * <p>Gets the amount of entities.</p>
+	 *
+	 * @return The amount of entities.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * <p>Gets whether the entities are being updated.</p>
+	 *
+	 * @return Whether the entities are being updated.
+	 */
+	public boolean isUpdating() {
+		return updating > 0;
+	}
+
+}
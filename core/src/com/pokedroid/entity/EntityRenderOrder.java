@@ -0,0 +1,106 @@
+package com.pokedroid.entity;
+
+/**
+ * <p>The {@code EntityRenderOrder} keeps the entities of a map in the order they
+ * should be drawn, from the highest y to the lowest, so that an {@link Entity}
+ * that is further down the screen is drawn over one that is behind it.</p>
+ *
+ * <p>The order is kept between frames and as entities only move a little each
+ * frame it is nearly sorted, so an insertion sort is used which only costs as
+ * much as the amount of entities that swapped places. Entities that were added
+ * or removed are found by stamping them, so no memory is allocated unless more
+ * entities are added than the order has ever held.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class EntityRenderOrder {
+	private static int nextStamp;
+
+	private Entity[] order;
+	private int size;
+
+	/**
+	 * <p>Constructor for an empty {@code EntityRenderOrder}.</p>
+	 */
+	public EntityRenderOrder() {
+		this.order = new Entity[16];
+	}
+
+	/**
+	 * <p>Brings the order up to date with a list of entities, entities that are
+	 * no longer in the list are dropped and new entities are added before the
+	 * order is sorted.</p>
+	 *
+	 * @param entities The entities of the map.
+	 */
+	public void update(EntityList entities) {
+		int listStamp = ++nextStamp, orderStamp = ++nextStamp;
+		int count = entities.size();
+		for(int i = 0; i < count; i++)
+			entities.get(i).listStamp = listStamp;
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			Entity e = order[i];
+			if(e.listStamp == listStamp && e.orderStamp != orderStamp) {
+				e.orderStamp = orderStamp;
+				order[kept++] = e;
+			}
+		}
+		for(int i = kept; i < size; i++)
+			order[i] = null;
+		size = kept;
+		if(count > order.length) {
+			Entity[] grown = new Entity[Math.max(count, order.length*2)];
+			System.arraycopy(order, 0, grown, 0, size);
+			order = grown;
+		}
+		for(int i = 0; i < count; i++) {
+			Entity e = entities.get(i);
+			if(e.orderStamp != orderStamp) {
+				e.orderStamp = orderStamp;
+				order[size++] = e;
+			}
+		}
+		sort();
+	}
+
+	/**
+	 * <p>Sorts the order by y from highest to lowest, entities with the same y
+	 * keep the order they were in.</p>
+	 */
+	private void sort() {
+		for(int i = 1; i < size; i++) {
+			Entity e = order[i];
+			float y = e.getY();
+			int j = i-1;
+			while(j >= 0 && order[j].getY() < y) {
+				order[j+1] = order[j];
+				j--;
+			}
+			order[j+1] = e;
+		}
+	}
+
+	/**
+	 * <p>Gets an entity in the order it should be drawn.</p>
+	 *
+	 * @param index The index within the order.
+	 * @return The entity.
+	 */
+	public Entity get(int index) {
+		return this.order[index];
+	}
+
+	/**
+	 * <p>Gets the amount of entities in the order.</p>
+	 *
+	 * @return The amount of entities.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+}
@@ -1,10 +1,11 @@
 package com.pokedroid.entity;
 
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.pokedroid.map.MapPrefetcher;
 import com.pokedroid.map.TileMap;
+import com.pokedroid.map.TileSet;
 import com.pokedroid.util.TextureUtils;
 
 /**
@@ -28,6 +29,9 @@ public abstract class HumanEntity extends Entity {
 	protected EntityDirection moveDirection, nextMoveDirection;
 	protected int targetX, targetY;
 	protected boolean step;
+	private TileMap heldMap;
+	private int heldX, heldY, heldTargetX, heldTargetY;
+	private MapPrefetcher prefetcher;
 
 	/**
 	 * <p>Constructor for a new {@code HumanEntity}.</p>
@@ -37,7 +41,7 @@ public abstract class HumanEntity extends Entity {
 	 * @param x The x location of the entity.
 	 * @param y The y location of the entity.
 	 */
-	public HumanEntity(Texture texture, TileMap map, int x, int y) {
+	public HumanEntity(TextureRegion texture, TileMap map, int x, int y) {
 		this(texture, map, x, y, STANDARD_MOVE_SPEED);
 	}
 
@@ -50,7 +54,7 @@ public abstract class HumanEntity extends Entity {
 	 * @param y The y location of the entity.
 	 * @param moveSpeed The move speed of this {@code HumanEntity}.
 	 */
-	public HumanEntity(Texture texture, TileMap map, int x, int y, float moveSpeed) {
+	public HumanEntity(TextureRegion texture, TileMap map, int x, int y, float moveSpeed) {
 		this(texture, STANDARD_ANIM_SPEED/moveSpeed, map, x, y, moveSpeed);
 	}
 
@@ -64,7 +68,7 @@ public abstract class HumanEntity extends Entity {
 	 * @param y The y location of the entity.
 	 * @param moveSpeed The move speed of this {@code HumanEntity}.
 	 */
-	public HumanEntity(Texture texture, float animSpeed, TileMap map, int x, int y, float moveSpeed) {
+	public HumanEntity(TextureRegion texture, float animSpeed, TileMap map, int x, int y, float moveSpeed) {
 		super();
 		if(texture == null)
 			throw new NullPointerException("texture cannot be null.");
@@ -97,12 +101,7 @@ public abstract class HumanEntity extends Entity {
 	protected void applyMovement(float timeDelta) {
 		if(nextMoveDirection == EntityDirection.DIRECTION_UP
 				&& moveDirection == null && canMove(tileX, tileY+1)) {
-			boolean ledge = false;
-			for(int i = 0; i < map.getLayerCount(); i++) {
-				ledge = map.getTileset().isDownLedge(map.getTile(i, tileX, tileY+1));
-				if(ledge) break;
-			}
-			if(ledge)
+			if(isDownLedge(tileX, tileY+1))
 				return;
 			moveDirection = lookDirection = EntityDirection.DIRECTION_UP;
 			targetY = tileY+1;
@@ -115,12 +114,7 @@ public abstract class HumanEntity extends Entity {
 			moveDirection = lookDirection = EntityDirection.DIRECTION_DOWN;
 			targetY = tileY-1;
 
-			boolean ledge = false;
-			for(int i = 0; i < map.getLayerCount(); i++) {
-				ledge = map.getTileset().isDownLedge(map.getTile(i, tileX, targetY));
-				if(ledge) break;
-			}
-			if(ledge) {
+			if(isDownLedge(tileX, targetY)) {
 				targetY = tileY-2;
 				velocity.y = -(moveSpeed*2);
 				velocity.z = moveSpeed*2;
@@ -155,12 +149,7 @@ public abstract class HumanEntity extends Entity {
 					if(tileY >= 0 && tileY < map.getHeight())
 						System.out.println(map.getTile(0, tileX, tileY) + ":" + map.getTile(1, tileX, tileY)
 						+ ":" + map.getTile(2, tileX, tileY));
-					boolean ledge = false;
-					if(tileY >= 0 && tileY < map.getHeight()-1)
-						for(int i = 0; i < map.getLayerCount(); i++) {
-							ledge = map.getTileset().isDownLedge(map.getTile(i, tileX, tileY+1));
-							if(ledge) break;
-						}
+					boolean ledge = isDownLedge(tileX, tileY+1);
 					if(nextMoveDirection == EntityDirection.DIRECTION_UP
 							&& canMove(tileX, tileY+1) && !ledge) {
 						targetY = tileY+1;
@@ -173,12 +162,7 @@ public abstract class HumanEntity extends Entity {
 				} else if(moveDirection == EntityDirection.DIRECTION_DOWN &&
 						position.y < targetY*map.getTileset().getHeight()) {
 					tileY = targetY;
-					boolean ledge = false;
-					if(tileY >= 0 && tileY < map.getHeight()-1)
-						for(int i = 0; i < map.getLayerCount(); i++) {
-							ledge = map.getTileset().isDownLedge(map.getTile(i, tileX, tileY-1));
-							if(ledge) break;
-						}
+					boolean ledge = (tileY < map.getHeight()-1) && isDownLedge(tileX, tileY-1);
 					if(tileY >= 0 && tileY < map.getHeight())
 						System.out.println(map.getTile(0, tileX, tileY) + ":" + map.getTile(1, tileX, tileY)
 						+ ":" + map.getTile(2, tileX, tileY));
@@ -232,6 +216,54 @@ public abstract class HumanEntity extends Entity {
 		if(position.z < 0) {
 			position.z = velocity.z = 0f;
 		}
+		updateOccupancy();
+	}
+
+	/**
+	 * <p>Updates the tiles this {@code HumanEntity} holds within the {@link com.pokedroid.map.OccupancyGrid}
+	 * of its map, this is the tile it is on and the tile it is moving to.</p>
+	 */
+	protected void updateOccupancy() {
+		if(heldMap == map && heldX == tileX && heldY == tileY
+				&& heldTargetX == targetX && heldTargetY == targetY)
+			return;
+		boolean moved = heldMap != map || heldX != tileX || heldY != tileY;
+		releaseOccupancy();
+		if(!map.getOccupancy().occupy(this, tileX, tileY) && map.getOccupancy().contains(tileX, tileY))
+			System.err.println("[HumanEntity] Tile " + tileX + "," + tileY + " of " + map + " is already held by "
+					+ map.getEntityAt(tileX, tileY));
+		if(!map.getOccupancy().occupy(this, targetX, targetY) && map.getOccupancy().contains(targetX, targetY))
+			System.err.println("[HumanEntity] Tile " + targetX + "," + targetY + " of " + map + " is already held by "
+					+ map.getEntityAt(targetX, targetY));
+		heldMap = map;
+		heldX = tileX;
+		heldY = tileY;
+		heldTargetX = targetX;
+		heldTargetY = targetY;
+		if(moved && prefetcher != null)
+			prefetcher.update(map, tileX, tileY);
+	}
+
+	/**
+	 * <p>Sets the {@code MapPrefetcher} told each time this {@code HumanEntity} moves
+	 * onto a new tile, this is used for the player so the maps it is walking towards
+	 * are loaded before it reaches them.</p>
+	 * 
+	 * @param prefetcher The prefetcher, or {@code null}.
+	 */
+	public void setPrefetcher(MapPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * <p>Frees the tiles this {@code HumanEntity} holds.</p>
+	 */
+	protected void releaseOccupancy() {
+		if(heldMap == null)
+			return;
+		heldMap.getOccupancy().release(this, heldX, heldY);
+		heldMap.getOccupancy().release(this, heldTargetX, heldTargetY);
+		heldMap = null;
 	}
 	
 	/**
@@ -255,6 +287,17 @@ public abstract class HumanEntity extends Entity {
 		}
 	}
 
+	/**
+	 * <p>Checks whether the cell at x and y is a downward ledge.</p>
+	 * 
+	 * @param x The x location.
+	 * @param y The y location.
+	 * @return Whether the cell is a downward ledge.
+	 */
+	protected boolean isDownLedge(int x, int y) {
+		return (map.getCellFlags(x, y) & TileSet.LEDGE_FLAG_DOWN) != 0;
+	}
+
 	/**
 	 * <p>Checks whether this {@code HumanEntity} can move to x and y.</p>
 	 * 
@@ -263,7 +306,31 @@ public abstract class HumanEntity extends Entity {
 	 * @return Whether the {@code HumanEntity} can move.
 	 */
 	protected boolean canMove(int x, int y) {
-		return map == null || map.canMove(x, y);
+		return map == null || map.canMove(this, x, y);
+	}
+
+	/**
+	 * <p>Gets the entity on the tile this {@code HumanEntity} is looking at.</p>
+	 * 
+	 * @return The entity, or {@code null} if there is none.
+	 */
+	public Entity getFacingEntity() {
+		int x = tileX, y = tileY;
+		switch(lookDirection) {
+		case DIRECTION_DOWN:
+			y--;
+			break;
+		case DIRECTION_LEFT:
+			x--;
+			break;
+		case DIRECTION_RIGHT:
+			x++;
+			break;
+		case DIRECTION_UP:
+			y++;
+			break;
+		}
+		return map.getEntityAt(x, y);
 	}
 
 	/**
@@ -282,7 +349,7 @@ public abstract class HumanEntity extends Entity {
 	 * 
 	 * @param texture The texture of the spritesheet.
 	 */
-	public void setSprite(Texture texture) {
+	public void setSprite(TextureRegion texture) {
 		this.moveAnims = TextureUtils.createRMAnimation(texture, animSpeed);
 	}
 
@@ -319,6 +386,7 @@ public abstract class HumanEntity extends Entity {
 		if(map == null)
 			throw new NullPointerException("map cannot be null");
 		if(this.map != null) {
+			releaseOccupancy();
 			this.map.getEntityList().remove(this);
 			this.map.onExit();
 		}
@@ -372,6 +440,7 @@ public abstract class HumanEntity extends Entity {
 				}
 			}
 		}
+		updateOccupancy();
 	}
 
 	/**
@@ -2,8 +2,9 @@ package com.pokedroid.entity;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.pokedroid.map.TileMap;
+import com.pokedroid.map.World;
 
 /**
  * <p>The {@code Player} is the {@link Entity} that the player will control.</p>
@@ -20,36 +21,35 @@ public class Player extends HumanEntity {
 	 * @param map The map the player will start on.
 	 * @param walk The walking texture.
 	 */
-	public Player(Texture walk, TileMap map, int x, int y) {
+	public Player(TextureRegion walk, TileMap map, int x, int y) {
 		super(walk, map, x, y);
 	}
 	
 	/**
-	 * <p>Applies a map change.</p>
+	 * <p>Applies a map change, if the {@code Player} has walked off an edge of
+	 * the map onto another map of the {@link World} then the {@code Player} is
+	 * moved onto that map.</p>
 	 */
 	public void applyMapChange() {
-		if(tileY < 0) {
-			setMap(map.getConnection("south").map, tileX-map.getConnection("south").offset, map.getConnection("south").map.getHeight()-1, false);
-		} else if(tileY >= map.getHeight()) {
-			setMap(map.getConnection("north").map, tileX-map.getConnection("north").offset, 0, false);
-		}
+		if(tileX >= 0 && tileY >= 0 && tileX < map.getWidth() && tileY < map.getHeight())
+			return;
+		World world = map.getWorld();
+		if(world == null)
+			return;
+		int x = tileX+map.getWorldX(), y = tileY+map.getWorldY();
+		TileMap m = world.getMapAt(x, y);
+		if(m != null)
+			setMap(m, x-m.getWorldX(), y-m.getWorldY(), false);
 	}
 	
 	@Override
 	protected boolean canMove(int x, int y) {
 		if(Gdx.input.isKeyPressed(Keys.SHIFT_LEFT))
 			return true;
-		boolean b = super.canMove(x, y);
-		if(b) return b;
-		if(y < 0) {
-			if(map.hasConnection("south")) {
-				return map.getConnection("south").map.canMove(tileX-map.getConnection("south").offset, map.getConnection("south").map.getHeight()-1);
-			}
-		} else if(y >= map.getHeight()) {
-			if(map.hasConnection("north"))
-				return map.getConnection("north").map.canMove(tileX-map.getConnection("north").offset, 0);
-		}
-		return super.canMove(x, y);
+		World world = map.getWorld();
+		if(world == null)
+			return super.canMove(x, y);
+		return world.canMove(this, x+map.getWorldX(), y+map.getWorldY());
 	}
 
 }
@@ -0,0 +1,93 @@
+package com.pokedroid.map;
+
+/**
+ * <p>{@code LayerEncoding} decodes the tiles of a layer of a map JSON that have been
+ * written as a single string instead of an array of numbers, this is much smaller
+ * for layers that are mostly long runs of the same tile and is read without
+ * creating a {@code JsonValue} for every tile.</p>
+ *
+ * <p>The string starts with the name of the encoding and a colon, followed by runs
+ * separated by commas. A run is either a single value or a count and a value joined
+ * by {@code *}, so {@code "rle:3*5,-1,2*7"} is the tiles {@code 5,5,5,-1,7,7}.</p>
+ *
+ * <ul>
+ * <li>{@code rle} - each value is a tile.</li>
+ * <li>{@code delta} - each value is the difference from the tile before it, starting
+ * from {@code -1}, so runs of the same tile and rows of tiles that count upwards both
+ * become a single run.</li>
+ * </ul>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public final class LayerEncoding {
+	public static final String RLE = "rle", DELTA = "delta";
+
+	private LayerEncoding() {}
+
+	/**
+	 * <p>Decodes the tiles of an encoded layer.</p>
+	 *
+	 * @param encoded The encoded layer.
+	 * @param dst The array to decode into, it must hold every tile of the layer.
+	 * @param offset The index in {@code dst} to decode to.
+	 * @param count The amount of tiles the layer holds.
+	 * @throws MapInitialisationException Thrown if the layer is not encoded correctly
+	 * or does not hold {@code count} tiles.
+	 */
+	public static void decode(String encoded, int[] dst, int offset, int count) {
+		int colon = encoded.indexOf(':');
+		if(colon == -1)
+			throw new MapInitialisationException("Layer has no encoding");
+		String encoding = encoded.substring(0, colon);
+		boolean delta;
+		if(encoding.equals(RLE)) delta = false;
+		else if(encoding.equals(DELTA)) delta = true;
+		else throw new MapInitialisationException("Unknown layer encoding " + encoding);
+		int pos = colon+1, length = encoded.length(), written = 0, previous = -1;
+		while(pos < length) {
+			int runLength = 1;
+			long value = 0;
+			boolean negative = false, digits = false;
+			for(; pos < length; pos++) {
+				char c = encoded.charAt(pos);
+				if(c >= '0' && c <= '9') {
+					value = (value*10) + (c-'0');
+					digits = true;
+					if(value > Integer.MAX_VALUE)
+						throw new MapInitialisationException("Layer value is too large");
+				} else if(c == '-' && !digits && !negative) {
+					negative = true;
+				} else if(c == '*' && digits && !negative && runLength == 1) {
+					runLength = (int)value;
+					value = 0;
+					digits = false;
+				} else if(c == ',') {
+					pos++;
+					break;
+				} else if(c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+					throw new MapInitialisationException("Unexpected '" + c + "' in encoded layer");
+				}
+			}
+			if(!digits)
+				throw new MapInitialisationException("Missing value in encoded layer");
+			if(written+runLength > count)
+				throw new MapInitialisationException("Encoded layer holds more than " + count + " tiles");
+			int v = negative ? (int)-value : (int)value;
+			if(delta) {
+				for(int i = 0; i < runLength; i++) {
+					previous += v;
+					dst[offset+written++] = previous;
+				}
+			} else {
+				for(int i = 0; i < runLength; i++)
+					dst[offset+written++] = v;
+			}
+		}
+		if(written != count)
+			throw new MapInitialisationException("Encoded layer holds " + written + " tiles instead of " + count);
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.pokedroid.map;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.SerializationException;
+
+/**
+ * <p>A {@code MapFile} reads a map compiled into the binary map format, this loads
+ * much faster than a {@code map_*.json} file as the tiles are not parsed as JSON.</p>
+ *
+ * <p>Every value is little-endian. The file starts with a header:</p>
+ * <pre>
+ * 0   4  magic, the characters "PDMP"
+ * 4   2  version, {@link MapFile#VERSION}
+ * 6   1  bytes per tile, 1, 2 or 4
+ * 7   1  reserved, 0
+ * 8   4  width
+ * 12  4  height
+ * 16  4  layer count
+ * 20  4  length of the properties
+ * 24  -  properties, UTF-8 JSON holding every field of the map JSON except the tiles
+ * </pre>
+ *
+ * <p>The header is followed by the tiles of each layer, a row at a time starting
+ * with the bottom row so the rows are in the same order as a {@link TileLayer}.
+ * Each tile is stored unsigned and one higher than its id so an empty tile is
+ * {@code 0}.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class MapFile {
+	public static final String EXTENSION = "pdmap";
+	public static final int MAGIC = 0x504D4450, VERSION = 1, HEADER_SIZE = 24;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+	private final JsonValue properties;
+	private final int width, height, layerCount, bytesPerTile, tileStart;
+
+	/**
+	 * <p>Constructor for a new {@code MapFile}, this reads the header and leaves the
+	 * tiles to be read by {@link MapFile#readTiles(int[])}.</p>
+	 *
+	 * @param buffer The contents of the file, the buffer is read from its position.
+	 * @throws MapInitialisationException Thrown if the file is not a valid map file.
+	 */
+	public MapFile(ByteBuffer buffer) {
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if(this.buffer.remaining() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+			throw new MapInitialisationException("Not a map file");
+		if(this.buffer.getShort(4) != VERSION)
+			throw new MapInitialisationException("Unsupported map file version " + this.buffer.getShort(4));
+		this.bytesPerTile = this.buffer.get(6);
+		if(bytesPerTile != 1 && bytesPerTile != 2 && bytesPerTile != 4)
+			throw new MapInitialisationException("Unsupported tile size " + bytesPerTile);
+		this.width = this.buffer.getInt(8);
+		this.height = this.buffer.getInt(12);
+		this.layerCount = this.buffer.getInt(16);
+		int propertiesLength = this.buffer.getInt(20);
+		if(width <= 0 || height <= 0 || layerCount <= 0 || propertiesLength < 0)
+			throw new MapInitialisationException("Invalid map file header");
+		long tileBytes = (long)layerCount*width*height*bytesPerTile;
+		if((long)propertiesLength+tileBytes > (long)this.buffer.limit()-HEADER_SIZE)
+			throw new MapInitialisationException("Map file is truncated");
+		this.tileStart = HEADER_SIZE+propertiesLength;
+		byte[] json = new byte[propertiesLength];
+		this.buffer.position(HEADER_SIZE);
+		this.buffer.get(json);
+		try {
+			this.properties = new JsonReader().parse(new String(json, UTF_8));
+		} catch (SerializationException e) {
+			throw new MapInitialisationException("Invalid map file properties: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * <p>Gets whether a file name is a map in the binary map format.</p>
+	 *
+	 * @param name The file name.
+	 * @return Whether the file is a compiled map.
+	 */
+	public static boolean isMapFile(String name) {
+		return name.startsWith("map_") && name.endsWith("." + EXTENSION);
+	}
+
+	/**
+	 * <p>Reads the tiles of every layer into an array, one layer after another
+	 * with the rows of each starting from the bottom.</p>
+	 *
+	 * @param dst The array to read into, it must hold {@code layers*width*height} tiles.
+	 * @return The highest tile read, or {@code -1} if every tile is empty.
+	 */
+	public int readTiles(int[] dst) {
+		int count = layerCount*width*height, max = -1;
+		buffer.position(tileStart);
+		switch(bytesPerTile) {
+		case 1:
+			for(int i = 0; i < count; i++) {
+				int tile = (buffer.get() & 0xFF)-1;
+				dst[i] = tile;
+				if(tile > max) max = tile;
+			}
+			break;
+		case 2:
+			for(int i = 0; i < count; i++) {
+				int tile = (buffer.getShort() & 0xFFFF)-1;
+				dst[i] = tile;
+				if(tile > max) max = tile;
+			}
+			break;
+		default:
+			for(int i = 0; i < count; i++) {
+				int tile = buffer.getInt()-1;
+				dst[i] = tile;
+				if(tile > max) max = tile;
+			}
+			break;
+		}
+		return max;
+	}
+
+	/**
+	 * <p>Gets the properties of the map, these are the fields of the map JSON
+	 * other than the tiles, such as the name, tileset and connections.</p>
+	 *
+	 * @return The properties.
+	 */
+	public JsonValue getProperties() {
+		return this.properties;
+	}
+
+	/**
+	 * <p>Gets the name of the tileset the map uses.</p>
+	 *
+	 * @return The name of the tileset.
+	 */
+	public String getTileset() {
+		return properties.getString("tileset");
+	}
+
+	/**
+	 * <p>Gets the width of the map in tiles.</p>
+	 *
+	 * @return The width in tiles.
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * <p>Gets the height of the map in tiles.</p>
+	 *
+	 * @return The height in tiles.
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * <p>Gets the amount of layers.</p>
+	 *
+	 * @return The amount of layers.
+	 */
+	public int getLayerCount() {
+		return this.layerCount;
+	}
+
+	/**
+	 * <p>Gets the amount of bytes each tile is stored in.</p>
+	 *
+	 * @return The bytes per tile.
+	 */
+	public int getBytesPerTile() {
+		return this.bytesPerTile;
+	}
+
+}
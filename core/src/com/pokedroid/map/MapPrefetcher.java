@@ -0,0 +1,171 @@
+package com.pokedroid.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import com.pokedroid.entity.EntityDirection;
+import com.pokedroid.map.TileMap.MapConnection;
+
+/**
+ * <p>A {@code MapPrefetcher} gets the maps beyond an edge ready before the player
+ * crosses it. When the player comes within a distance of an edge with a connection
+ * the connected map, and the maps connected to it, have their tiles reloaded on a
+ * worker thread if a {@link MapResidency} unloaded them. Once a map is loaded its
+ * {@link TileMapCache} is compiled on the rendering thread, a map at a time, so
+ * entering it does not compile every cache in a single frame.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class MapPrefetcher {
+	public static final int DEFAULT_DISTANCE = 6;
+
+	private final Executor executor;
+	private final int distance;
+	private final Set<TileMap> pending;
+	private final List<TileMap> loaded;
+	private int generation;
+
+	/**
+	 * <p>Constructor for a new {@code MapPrefetcher} using the {@link MapPrefetcher#DEFAULT_DISTANCE}.</p>
+	 *
+	 * @param executor The executor the tiles are reloaded on.
+	 */
+	public MapPrefetcher(Executor executor) {
+		this(executor, DEFAULT_DISTANCE);
+	}
+
+	/**
+	 * <p>Constructor for a new {@code MapPrefetcher}.</p>
+	 *
+	 * @param executor The executor the tiles are reloaded on.
+	 * @param distance The distance in tiles from an edge a connected map is fetched at.
+	 */
+	public MapPrefetcher(Executor executor, int distance) {
+		this.executor = executor;
+		this.distance = distance;
+		this.pending = Collections.synchronizedSet(new HashSet<TileMap>());
+		this.loaded = new ArrayList<TileMap>();
+	}
+
+	/**
+	 * <p>Fetches the maps connected to the edges near a tile, this is called on the
+	 * rendering thread each time the player moves onto a new tile.</p>
+	 *
+	 * @param map The map the player is on.
+	 * @param tileX The x tile position of the player.
+	 * @param tileY The y tile position of the player.
+	 */
+	public void update(TileMap map, int tileX, int tileY) {
+		TileMap compile = null;
+		synchronized(loaded) {
+			if(!loaded.isEmpty())
+				compile = loaded.remove(0);
+		}
+		if(compile != null)
+			compile.prepareCache();
+		for(MapConnection c : map.getConnections()) {
+			if(c == null || getEdgeDistance(map, c.direction, tileX, tileY) > distance)
+				continue;
+			fetch(c.map);
+			// These are drawn around the player once the connected map is entered.
+			for(MapConnection next : c.map.getConnections())
+				if(next != null && next.map != map) fetch(next.map);
+		}
+	}
+
+	/**
+	 * <p>Gets how many tiles a tile is from an edge of a map.</p>
+	 *
+	 * @param map The map.
+	 * @param direction The edge.
+	 * @param tileX The x tile position.
+	 * @param tileY The y tile position.
+	 * @return The distance in tiles, {@code 0} is a tile on the edge.
+	 */
+	public static int getEdgeDistance(TileMap map, EntityDirection direction, int tileX, int tileY) {
+		switch(direction) {
+		case DIRECTION_UP: return (map.getHeight()-1)-tileY;
+		case DIRECTION_DOWN: return tileY;
+		case DIRECTION_LEFT: return tileX;
+		case DIRECTION_RIGHT: return (map.getWidth()-1)-tileX;
+		default: return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * <p>Reloads the tiles of a map on a worker thread, a map that is already loaded
+	 * only has its cache compiled.</p>
+	 *
+	 * @param map The map.
+	 */
+	private void fetch(final TileMap map) {
+		final int fetchGeneration;
+		synchronized(loaded) {
+			fetchGeneration = generation;
+		}
+		if(map.isResident()) {
+			if(map.needsCache())
+				addLoaded(map, fetchGeneration);
+			return;
+		}
+		if(!pending.add(map))
+			return;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					map.requireTiles();
+					addLoaded(map, fetchGeneration);
+				} catch (RuntimeException e) {
+					System.err.println("[MapPrefetcher] Unable to load " + map + ": " + e.getMessage());
+				} finally {
+					pending.remove(map);
+				}
+			}
+		});
+	}
+
+	/**
+	 * <p>Queues a loaded map to have its cache compiled, a map fetched before the
+	 * last {@link MapPrefetcher#clear()} is dropped as its story may be disposed.</p>
+	 *
+	 * @param map The map.
+	 * @param fetchGeneration The generation the map was fetched in.
+	 */
+	private void addLoaded(TileMap map, int fetchGeneration) {
+		synchronized(loaded) {
+			if(fetchGeneration == generation && !loaded.contains(map))
+				loaded.add(map);
+		}
+	}
+
+	/**
+	 * <p>Forgets the maps waiting for their cache to be compiled, maps still being
+	 * loaded on a worker thread are dropped once they finish. This is called when
+	 * the story is changed.</p>
+	 */
+	public void clear() {
+		synchronized(loaded) {
+			generation++;
+			loaded.clear();
+		}
+		pending.clear();
+	}
+
+	/**
+	 * <p>Gets the distance in tiles from an edge a connected map is fetched at.</p>
+	 *
+	 * @return The distance in tiles.
+	 */
+	public int getDistance() {
+		return this.distance;
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.pokedroid.map;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.pokedroid.map.TileMap.MapConnection;
+
+/**
+ * <p>A {@code MapResidency} limits how many maps of a story have their tiles
+ * loaded at once. Every map within a number of connection hops of the map the
+ * player is on is kept loaded, the other maps are unloaded, least recently used
+ * first, while the tiles of every map hold more than the memory budget.</p>
+ *
+ * <p>An unloaded map keeps its name, size, connections and place in its
+ * {@link World}, so linking and placing maps never needs the tiles. The tiles are
+ * reloaded as soon as anything reads them, such as rendering a connection, or
+ * ahead of time by a {@link MapPrefetcher}.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class MapResidency {
+	public static final int DEFAULT_HOPS = 2;
+	public static final long DEFAULT_BUDGET = 4L*1024L*1024L;
+
+	private final int hops;
+	private final long budget;
+	private final LinkedHashMap<TileMap, Boolean> maps;
+	private final Set<TileMap> near;
+	private final List<TileMap> queue;
+
+	/**
+	 * <p>Constructor for a new {@code MapResidency} using the {@link MapResidency#DEFAULT_HOPS}
+	 * and the {@link MapResidency#DEFAULT_BUDGET}.</p>
+	 */
+	public MapResidency() {
+		this(DEFAULT_HOPS, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * <p>Constructor for a new {@code MapResidency}.</p>
+	 *
+	 * @param hops The amount of connections away from the player a map is kept loaded,
+	 * this is at least {@code 1} so the maps drawn around the player are always loaded.
+	 * @param budget The amount of bytes the tiles of every map may hold before maps
+	 * are unloaded.
+	 */
+	public MapResidency(int hops, long budget) {
+		if(hops < 1)
+			throw new IllegalArgumentException("hops must be at least 1");
+		this.hops = hops;
+		this.budget = budget;
+		this.maps = new LinkedHashMap<TileMap, Boolean>(16, 0.75f, true);
+		this.near = new HashSet<TileMap>();
+		this.queue = new ArrayList<TileMap>();
+	}
+
+	/**
+	 * <p>Adds a map to be managed, maps are unloaded straight away if the budget
+	 * is exceeded so only part of a large story is loaded at once.</p>
+	 *
+	 * @param map The map.
+	 */
+	public synchronized void add(TileMap map) {
+		maps.put(map, Boolean.TRUE);
+		map.setResidency(this);
+		trim();
+	}
+
+	/**
+	 * <p>Keeps every map within the hops of a map from being unloaded and unloads
+	 * maps further away until the budget is met, this is called when a map is entered.
+	 * The maps that are kept are not loaded here, that is left to the
+	 * {@link MapPrefetcher} or to the first time their tiles are read, so entering a
+	 * map does not reload every map around it at once.</p>
+	 *
+	 * @param center The map the player is on.
+	 */
+	public synchronized void update(TileMap center) {
+		near.clear();
+		queue.clear();
+		near.add(center);
+		queue.add(center);
+		int start = 0;
+		for(int hop = 0; hop < hops; hop++) {
+			int end = queue.size();
+			for(int i = start; i < end; i++) {
+				for(MapConnection c : queue.get(i).getConnections()) {
+					if(c != null && near.add(c.map))
+						queue.add(c.map);
+				}
+			}
+			start = end;
+		}
+		// The furthest maps are touched first so the center is the most recently used.
+		for(int i = queue.size()-1; i >= 0; i--) {
+			TileMap m = queue.get(i);
+			if(maps.get(m) == null) {
+				maps.put(m, Boolean.TRUE);
+				m.setResidency(this);
+			}
+		}
+		trim();
+	}
+
+	/**
+	 * <p>Moves a map that was reloaded because its tiles were read to the most
+	 * recently used.</p>
+	 *
+	 * @param map The map.
+	 */
+	synchronized void reloaded(TileMap map) {
+		maps.get(map);
+	}
+
+	/**
+	 * <p>Unloads the least recently used maps that are not near the player until the
+	 * budget is met or there are no more maps that can be unloaded.</p>
+	 */
+	private void trim() {
+		long total = getResidentBytes();
+		if(total <= budget)
+			return;
+		Iterator<TileMap> it = new ArrayList<TileMap>(maps.keySet()).iterator();
+		while(it.hasNext() && total > budget) {
+			TileMap m = it.next();
+			if(!m.isResident() || near.contains(m))
+				continue;
+			long before = m.getResidentBytes();
+			if(m.unloadTiles())
+				total -= before-m.getResidentBytes();
+		}
+	}
+
+	/**
+	 * <p>Gets how much memory the tiles of every map hold.</p>
+	 *
+	 * @return The amount of bytes.
+	 */
+	public synchronized long getResidentBytes() {
+		long total = 0;
+		for(TileMap m : maps.keySet())
+			total += m.getResidentBytes();
+		return total;
+	}
+
+	/**
+	 * <p>Gets the amount of maps that have their tiles loaded.</p>
+	 *
+	 * @return The amount of loaded maps.
+	 */
+	public synchronized int getResidentCount() {
+		int count = 0;
+		for(TileMap m : maps.keySet())
+			if(m.isResident()) count++;
+		return count;
+	}
+
+	/**
+	 * <p>Gets the maps being managed.</p>
+	 *
+	 * @return A copy of the maps, least recently used first.
+	 */
+	public synchronized List<TileMap> getMaps() {
+		return new ArrayList<TileMap>(maps.keySet());
+	}
+
+	/**
+	 * <p>Gets the amount of connections away from the player a map is kept loaded.</p>
+	 *
+	 * @return The amount of hops.
+	 */
+	public int getHops() {
+		return this.hops;
+	}
+
+	/**
+	 * <p>Gets the amount of bytes the tiles of every map may hold.</p>
+	 *
+	 * @return The budget in bytes.
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+}
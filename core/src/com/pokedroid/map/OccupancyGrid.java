@@ -0,0 +1,149 @@
+package com.pokedroid.map;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.pokedroid.entity.Entity;
+
+/**
+ * <p>An {@code OccupancyGrid} holds the {@link Entity} standing on each tile of a
+ * {@link TileMap}, so finding the entity on a tile is a single array read rather
+ * than a search of the entity list.</p>
+ *
+ * <p>An entity that is moving holds both the tile it is leaving and the tile it is
+ * moving to, this reserves the target tile so two entities cannot move onto the same
+ * tile at once. A tile can only be held by one entity at a time.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class OccupancyGrid {
+
+	private final int width, height;
+	private final Entity[] cells;
+	private final Set<Entity> seen = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+
+	/**
+	 * <p>Constructor for an empty {@code OccupancyGrid}.</p>
+	 *
+	 * @param width The width in tiles.
+	 * @param height The height in tiles.
+	 */
+	public OccupancyGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.cells = new Entity[width*height];
+	}
+
+	/**
+	 * <p>Marks a tile as held by an entity, this does nothing if the tile is
+	 * outside of the grid.</p>
+	 *
+	 * @param entity The entity.
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 * @return Whether the entity now holds the tile, this is {@code false} if
+	 * the tile is outside of the grid or held by another entity.
+	 */
+	public boolean occupy(Entity entity, int x, int y) {
+		if(!contains(x, y))
+			return false;
+		int i = x + (y * width);
+		if(cells[i] != null && cells[i] != entity)
+			return false;
+		cells[i] = entity;
+		return true;
+	}
+
+	/**
+	 * <p>Frees a tile if it is held by an entity.</p>
+	 *
+	 * @param entity The entity.
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 */
+	public void release(Entity entity, int x, int y) {
+		if(!contains(x, y))
+			return;
+		int i = x + (y * width);
+		if(cells[i] == entity)
+			cells[i] = null;
+	}
+
+	/**
+	 * <p>Gets the entity holding a tile.</p>
+	 *
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 * @return The entity, or {@code null} if the tile is free or outside of the grid.
+	 */
+	public Entity get(int x, int y) {
+		return contains(x, y) ? cells[x + (y * width)] : null;
+	}
+
+	/**
+	 * <p>Gets whether a tile is held by an entity other than the one given.</p>
+	 *
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 * @param ignore The entity to ignore, may be {@code null}.
+	 * @return Whether the tile is held by another entity.
+	 */
+	public boolean isOccupied(int x, int y, Entity ignore) {
+		Entity e = get(x, y);
+		return e != null && e != ignore;
+	}
+
+	/**
+	 * <p>Adds the entities holding any tile within a rectangle to a list, each
+	 * entity is only added once.</p>
+	 *
+	 * @param x The first x tile position.
+	 * @param y The first y tile position.
+	 * @param w The width of the rectangle in tiles.
+	 * @param h The height of the rectangle in tiles.
+	 * @param out The list to add the entities to.
+	 * @return The amount of entities added.
+	 */
+	public int query(int x, int y, int w, int h, List<Entity> out) {
+		int startX = Math.max(0, x), startY = Math.max(0, y);
+		int endX = Math.min(width, x+w), endY = Math.min(height, y+h);
+		int count = 0;
+		seen.addAll(out);
+		for(int ty = startY; ty < endY; ty++) {
+			for(int tx = startX; tx < endX; tx++) {
+				Entity e = cells[tx + (ty * width)];
+				if(e != null && seen.add(e)) {
+					out.add(e);
+					count++;
+				}
+			}
+		}
+		seen.clear();
+		return count;
+	}
+
+	/**
+	 * <p>Frees every tile.</p>
+	 */
+	public void clear() {
+		Arrays.fill(cells, null);
+	}
+
+	/**
+	 * <p>Gets whether a tile is within the grid.</p>
+	 *
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 * @return Whether the tile is within the grid.
+	 */
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.pokedroid.map;
+
+/**
+ * <p>A {@code Path} is a list of tile positions found by a {@link PathFinder}, it
+ * does not include the start and ends with the goal. A step over a ledge goes
+ * straight to the tile the ledge is jumped onto.</p>
+ *
+ * <p>A {@code Path} is meant to be reused, its arrays only grow when a longer path
+ * is written into it.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class Path {
+
+	private int[] xs, ys;
+	private int length;
+
+	/**
+	 * <p>Constructor for an empty {@code Path}.</p>
+	 */
+	public Path() {
+		this(64);
+	}
+
+	/**
+	 * <p>Constructor for an empty {@code Path}.</p>
+	 *
+	 * @param capacity The amount of steps to make room for.
+	 */
+	public Path(int capacity) {
+		this.xs = new int[Math.max(1, capacity)];
+		this.ys = new int[Math.max(1, capacity)];
+	}
+
+	/**
+	 * <p>Empties the path and makes room for an amount of steps.</p>
+	 *
+	 * @param length The amount of steps that will be set.
+	 */
+	void reset(int length) {
+		if(length > xs.length) {
+			xs = new int[Math.max(length, xs.length*2)];
+			ys = new int[xs.length];
+		}
+		this.length = length;
+	}
+
+	/**
+	 * <p>Sets a step of the path.</p>
+	 *
+	 * @param i The index of the step.
+	 * @param x The x tile position.
+	 * @param y The y tile position.
+	 */
+	void set(int i, int x, int y) {
+		xs[i] = x;
+		ys[i] = y;
+	}
+
+	/**
+	 * <p>Empties the path.</p>
+	 */
+	public void clear() {
+		this.length = 0;
+	}
+
+	/**
+	 * <p>Gets the amount of steps in the path.</p>
+	 *
+	 * @return The amount of steps.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * <p>Gets the x tile position of a step.</p>
+	 *
+	 * @param i The index of the step.
+	 * @return The x tile position.
+	 */
+	public int getX(int i) {
+		if(i >= length)
+			throw new IndexOutOfBoundsException(String.valueOf(i));
+		return this.xs[i];
+	}
+
+	/**
+	 * <p>Gets the y tile position of a step.</p>
+	 *
+	 * @param i The index of the step.
+	 * @return The y tile position.
+	 */
+	public int getY(int i) {
+		if(i >= length)
+			throw new IndexOutOfBoundsException(String.valueOf(i));
+		return this.ys[i];
+	}
+
+}
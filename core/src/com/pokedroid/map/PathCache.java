@@ -0,0 +1,126 @@
+package com.pokedroid.map;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A {@code PathCache} holds the most recently found paths of a {@link TileMap},
+ * so entities walking the same route do not search for it again. Paths that could
+ * not be found are cached as well.</p>
+ *
+ * <p>Each cache remembers the tile version of the map it was filled from, see
+ * {@link TileMap#getTileVersion()}, once a tile changes the flags of a cell every
+ * cached path is thrown away.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class PathCache {
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final int[] NO_PATH = new int[0];
+
+	private final Map<Long, int[]> paths;
+	private int version = -1;
+	private int width;
+
+	/**
+	 * <p>Constructor for an empty {@code PathCache}.</p>
+	 *
+	 * @param capacity The amount of paths kept before the least recently used is removed.
+	 */
+	public PathCache(final int capacity) {
+		this.paths = new LinkedHashMap<Long, int[]>(capacity, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * <p>Gets a cached path, the path is written into {@code out}.</p>
+	 *
+	 * @param grid The grid the path was found on.
+	 * @param version The tile version of the grid.
+	 * @param start The index of the start cell.
+	 * @param goal The index of the goal cell.
+	 * @param out The path to write to.
+	 * @return {@link Boolean#TRUE} if a path is cached, {@link Boolean#FALSE} if it is
+	 * cached that there is no path or {@code null} if nothing is cached.
+	 */
+	public Boolean get(PathGrid grid, int version, int start, int goal, Path out) {
+		validate(grid, version);
+		int[] steps = paths.get(key(start, goal));
+		if(steps == null)
+			return null;
+		if(steps == NO_PATH) {
+			out.clear();
+			return Boolean.FALSE;
+		}
+		out.reset(steps.length);
+		for(int i = 0; i < steps.length; i++)
+			out.set(i, steps[i] % width, steps[i] / width);
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * <p>Caches a path.</p>
+	 *
+	 * @param grid The grid the path was found on.
+	 * @param version The tile version of the grid.
+	 * @param start The index of the start cell.
+	 * @param goal The index of the goal cell.
+	 * @param path The path, or {@code null} if there is no path.
+	 */
+	public void put(PathGrid grid, int version, int start, int goal, Path path) {
+		validate(grid, version);
+		int[] steps = NO_PATH;
+		if(path != null) {
+			steps = new int[path.getLength()];
+			for(int i = 0; i < steps.length; i++)
+				steps[i] = path.getX(i) + (path.getY(i) * width);
+		}
+		paths.put(key(start, goal), steps);
+	}
+
+	/**
+	 * <p>Throws away every cached path if the tiles of the grid have changed
+	 * since they were cached.</p>
+	 *
+	 * @param grid The grid.
+	 * @param version The tile version of the grid.
+	 */
+	private void validate(PathGrid grid, int version) {
+		if(this.version != version || this.width != grid.getWidth()) {
+			paths.clear();
+			this.version = version;
+			this.width = grid.getWidth();
+		}
+	}
+
+	/**
+	 * <p>Throws away every cached path.</p>
+	 */
+	public void clear() {
+		paths.clear();
+	}
+
+	/**
+	 * <p>Gets the amount of cached paths.</p>
+	 *
+	 * @return The amount of paths.
+	 */
+	public int size() {
+		return paths.size();
+	}
+
+	private static Long key(int start, int goal) {
+		return Long.valueOf(((long)start << 32) | (goal & 0xFFFFFFFFL));
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.pokedroid.map;
+
+import java.util.Arrays;
+
+/**
+ * <p>A {@code PathFinder} finds the shortest walkable path between two tiles of a
+ * {@link PathGrid} such as a {@link TileMap} using A*, moving one tile at a time
+ * in the four directions an entity can walk.</p>
+ *
+ * <p>Ledges are one way, a tile with {@link TileSet#LEDGE_FLAG_DOWN} can only be
+ * walked onto from above, which jumps over it onto the tile below just like a
+ * {@link com.pokedroid.entity.HumanEntity}, and can not be walked onto from below.
+ * {@link TileSet#LEDGE_FLAG_LEFT} and {@link TileSet#LEDGE_FLAG_RIGHT} work the same
+ * way to the left and right.</p>
+ *
+ * <p>The arrays used by the search are kept between searches and only grow when a
+ * larger grid is searched, each search marks the cells it has seen with a new stamp
+ * instead of clearing them, so a search does not allocate. A {@code PathFinder}
+ * must only be used by one thread at a time.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class PathFinder {
+	private static final int[] DX = {0, 0, -1, 1}, DY = {-1, 1, 0, 0};
+	/** <p>The ledge jumped over and the ledge blocked when moving in each direction.</p> */
+	private static final int[] JUMP = {TileSet.LEDGE_FLAG_DOWN, 0, TileSet.LEDGE_FLAG_LEFT, TileSet.LEDGE_FLAG_RIGHT},
+			BLOCK = {0, TileSet.LEDGE_FLAG_DOWN, TileSet.LEDGE_FLAG_RIGHT, TileSet.LEDGE_FLAG_LEFT};
+
+	private int[] cost, score, parent, stamp, heap, heapIndex;
+	private int heapSize, currentStamp;
+	private int lastExpanded;
+
+	/**
+	 * <p>Constructor for a new {@code PathFinder}.</p>
+	 */
+	public PathFinder() {
+		this(64*64);
+	}
+
+	/**
+	 * <p>Constructor for a new {@code PathFinder}.</p>
+	 *
+	 * @param capacity The amount of cells to make room for.
+	 */
+	public PathFinder(int capacity) {
+		allocate(Math.max(1, capacity));
+	}
+
+	private void allocate(int capacity) {
+		cost = new int[capacity];
+		score = new int[capacity];
+		parent = new int[capacity];
+		stamp = new int[capacity];
+		heap = new int[capacity];
+		heapIndex = new int[capacity];
+		currentStamp = 0;
+	}
+
+	/**
+	 * <p>Finds a path on a map, the path is taken from the {@link PathCache} of the
+	 * map if it has already been found since the tiles last changed.</p>
+	 *
+	 * @param map The map.
+	 * @param startX The x tile to start from.
+	 * @param startY The y tile to start from.
+	 * @param goalX The x tile to reach.
+	 * @param goalY The y tile to reach.
+	 * @param out The path to write to, it is emptied if there is no path.
+	 * @return Whether a path was found.
+	 */
+	public boolean findPath(TileMap map, int startX, int startY, int goalX, int goalY, Path out) {
+		if(!inBounds(map, startX, startY) || !inBounds(map, goalX, goalY)) {
+			out.clear();
+			return false;
+		}
+		PathCache cache = map.getPathCache();
+		int start = startX + (startY * map.getWidth()), goal = goalX + (goalY * map.getWidth());
+		Boolean cached = cache.get(map, map.getTileVersion(), start, goal, out);
+		if(cached != null)
+			return cached.booleanValue();
+		boolean found = findPath((PathGrid)map, startX, startY, goalX, goalY, out);
+		cache.put(map, map.getTileVersion(), start, goal, found ? out : null);
+		return found;
+	}
+
+	/**
+	 * <p>Finds a path on a grid without using a cache.</p>
+	 *
+	 * @param grid The grid.
+	 * @param startX The x tile to start from.
+	 * @param startY The y tile to start from.
+	 * @param goalX The x tile to reach.
+	 * @param goalY The y tile to reach.
+	 * @param out The path to write to, it is emptied if there is no path.
+	 * @return Whether a path was found.
+	 */
+	public boolean findPath(PathGrid grid, int startX, int startY, int goalX, int goalY, Path out) {
+		out.clear();
+		lastExpanded = 0;
+		if(!inBounds(grid, startX, startY) || !inBounds(grid, goalX, goalY))
+			return false;
+		if((grid.getCellFlags(goalX, goalY) & TileSet.SOLID_FLAG) != 0)
+			return false;
+		int width = grid.getWidth(), size = width*grid.getHeight();
+		if(size > stamp.length)
+			allocate(size);
+		if(++currentStamp == Integer.MAX_VALUE) {
+			Arrays.fill(stamp, 0);
+			currentStamp = 1;
+		}
+		// A cell is open with stamp and closed with -stamp.
+		int open = currentStamp, closed = -currentStamp;
+		int start = startX + (startY * width), goal = goalX + (goalY * width);
+		heapSize = 0;
+		stamp[start] = open;
+		cost[start] = 0;
+		parent[start] = -1;
+		push(start, distance(startX, startY, goalX, goalY));
+		while(heapSize > 0) {
+			int current = pop();
+			if(current == goal) {
+				writePath(start, goal, width, out);
+				return true;
+			}
+			stamp[current] = closed;
+			lastExpanded++;
+			int cx = current % width, cy = current / width;
+			for(int d = 0; d < 4; d++) {
+				int nx = cx+DX[d], ny = cy+DY[d];
+				if(!inBounds(grid, nx, ny))
+					continue;
+				int flags = grid.getCellFlags(nx, ny);
+				if((flags & (TileSet.SOLID_FLAG | BLOCK[d])) != 0)
+					continue;
+				int stepCost = 1;
+				if((flags & JUMP[d]) != 0) {
+					// Walking the way the ledge faces jumps over it onto the next tile.
+					nx += DX[d];
+					ny += DY[d];
+					if(!inBounds(grid, nx, ny) || (grid.getCellFlags(nx, ny) & TileSet.SOLID_FLAG) != 0)
+						continue;
+					stepCost = 2;
+				}
+				int next = nx + (ny * width);
+				if(stamp[next] == closed)
+					continue;
+				int nextCost = cost[current]+stepCost;
+				if(stamp[next] == open) {
+					if(nextCost >= cost[next])
+						continue;
+					cost[next] = nextCost;
+					parent[next] = current;
+					score[next] = nextCost+distance(nx, ny, goalX, goalY);
+					siftUp(heapIndex[next]);
+				} else {
+					stamp[next] = open;
+					cost[next] = nextCost;
+					parent[next] = current;
+					push(next, nextCost+distance(nx, ny, goalX, goalY));
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <p>Follows the parents from the goal back to the start and writes the steps
+	 * into a path.</p>
+	 */
+	private void writePath(int start, int goal, int width, Path out) {
+		int length = 0;
+		for(int c = goal; c != start; c = parent[c])
+			length++;
+		out.reset(length);
+		int i = length-1;
+		for(int c = goal; c != start; c = parent[c])
+			out.set(i--, c % width, c / width);
+	}
+
+	private void push(int cell, int f) {
+		score[cell] = f;
+		heap[heapSize] = cell;
+		heapIndex[cell] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	private int pop() {
+		int top = heap[0];
+		heap[0] = heap[--heapSize];
+		heapIndex[heap[0]] = 0;
+		siftDown(0);
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int cell = heap[i];
+		while(i > 0) {
+			int p = (i-1) >> 1;
+			if(score[heap[p]] <= score[cell])
+				break;
+			heap[i] = heap[p];
+			heapIndex[heap[i]] = i;
+			i = p;
+		}
+		heap[i] = cell;
+		heapIndex[cell] = i;
+	}
+
+	private void siftDown(int i) {
+		int cell = heap[i];
+		while(true) {
+			int child = (i << 1)+1;
+			if(child >= heapSize)
+				break;
+			if(child+1 < heapSize && score[heap[child+1]] < score[heap[child]])
+				child++;
+			if(score[heap[child]] >= score[cell])
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = cell;
+		heapIndex[cell] = i;
+	}
+
+	private static int distance(int x, int y, int goalX, int goalY) {
+		return Math.abs(goalX-x) + Math.abs(goalY-y);
+	}
+
+	private static boolean inBounds(PathGrid grid, int x, int y) {
+		return x >= 0 && y >= 0 && x < grid.getWidth() && y < grid.getHeight();
+	}
+
+	/**
+	 * <p>Gets the amount of cells the last search expanded.</p>
+	 *
+	 * @return The amount of cells.
+	 */
+	public int getLastExpanded() {
+		return this.lastExpanded;
+	}
+
+}
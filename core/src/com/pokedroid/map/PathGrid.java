@@ -0,0 +1,37 @@
+package com.pokedroid.map;
+
+/**
+ * <p>A {@code PathGrid} is a grid of cells with {@link TileSet} flags that a
+ * {@link PathFinder} can search.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public interface PathGrid {
+
+	/**
+	 * <p>Gets the width of the grid in cells.</p>
+	 *
+	 * @return The width in cells.
+	 */
+	public int getWidth();
+
+	/**
+	 * <p>Gets the height of the grid in cells.</p>
+	 *
+	 * @return The height in cells.
+	 */
+	public int getHeight();
+
+	/**
+	 * <p>Gets the flags of a cell, such as {@link TileSet#SOLID_FLAG}.</p>
+	 *
+	 * @param x The x position.
+	 * @param y The y position.
+	 * @return The flags of the cell.
+	 */
+	public int getCellFlags(int x, int y);
+
+}
@@ -0,0 +1,94 @@
+package com.pokedroid.map;
+
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * <p>A {@code TileAnimation} is an animated tile of a {@link TileSet}, the tile that
+ * is placed on the map is swapped for each of the frames in turn.</p>
+ *
+ * <p>It is defined within the {@code animations} of a tileset by the id of the tile
+ * that is placed on the map:</p>
+ *
+ * <pre>
+ *   "animations": {
+ *     "12": { "frames": [12, 13, 14, 15], "duration": 0.25 }
+ *   }
+ * </pre>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class TileAnimation {
+
+	private final int tile;
+	private final int[] frames;
+	private final float frameDuration;
+
+	/**
+	 * <p>Constructor for a new {@code TileAnimation}.</p>
+	 *
+	 * @param tile The id of the tile that is animated.
+	 * @param anim The json value of the animation.
+	 */
+	public TileAnimation(int tile, JsonValue anim) {
+		this(tile, anim.get("frames").asIntArray(), anim.getFloat("duration"));
+	}
+
+	/**
+	 * <p>Constructor for a new {@code TileAnimation}.</p>
+	 *
+	 * @param tile The id of the tile that is animated.
+	 * @param frames The tile ids of each frame.
+	 * @param frameDuration The time each frame is shown for in seconds.
+	 */
+	public TileAnimation(int tile, int[] frames, float frameDuration) {
+		if(frames.length == 0)
+			throw new MapInitialisationException("Animation of tile " + tile + " has no frames");
+		if(frameDuration <= 0f)
+			throw new MapInitialisationException("Animation of tile " + tile + " has no duration");
+		this.tile = tile;
+		this.frames = frames;
+		this.frameDuration = frameDuration;
+	}
+
+	/**
+	 * <p>Gets the frame that is shown at a time.</p>
+	 *
+	 * @param time The time of the {@link com.pokedroid.util.AnimationClock}.
+	 * @return The index of the frame.
+	 */
+	public int getFrameIndex(double time) {
+		return (int)((long)(time/frameDuration) % frames.length);
+	}
+
+	/**
+	 * <p>Gets the tile id of a frame.</p>
+	 *
+	 * @param index The index of the frame.
+	 * @return The tile id of the frame.
+	 */
+	public int getFrame(int index) {
+		return this.frames[index];
+	}
+
+	/**
+	 * <p>Gets the amount of frames.</p>
+	 *
+	 * @return The amount of frames.
+	 */
+	public int getFrameCount() {
+		return this.frames.length;
+	}
+
+	/**
+	 * <p>Gets the id of the tile that is animated.</p>
+	 *
+	 * @return The tile id.
+	 */
+	public int getTile() {
+		return this.tile;
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.pokedroid.map;
+
+import java.util.Arrays;
+
+/**
+ * <p>A {@code TileLayer} holds the tiles of a single layer of a {@link TileMap}
+ * split into square chunks of {@link TileLayer#CHUNK_SIZE} tiles.</p>
+ *
+ * <p>The tiles of each chunk are held in a {@link TileStorage} of the smallest type
+ * that can hold the highest tile of the map.</p>
+ *
+ * <p>Chunks that only contain empty tiles ({@code -1}) are not allocated, and every
+ * chunk has a dirty flag that is raised when one of its tiles changes so that
+ * anything built from the tiles only has to rebuild the chunks that were touched.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class TileLayer {
+	public static final int CHUNK_SHIFT = 4, CHUNK_SIZE = 1 << CHUNK_SHIFT, CHUNK_MASK = CHUNK_SIZE-1;
+
+	private final int width, height, maxTile;
+	private final int chunksX, chunksY;
+	private final TileStorage[] chunks;
+	private final int[] chunkCounts;
+	private final boolean[] dirty;
+
+	/**
+	 * <p>Constructor for an empty {@code TileLayer} that can hold any tile.</p>
+	 *
+	 * @param width The width in tiles.
+	 * @param height The height in tiles.
+	 */
+	public TileLayer(int width, int height) {
+		this(width, height, TileStorage.INT_MAX_TILE);
+	}
+
+	/**
+	 * <p>Constructor for an empty {@code TileLayer}.</p>
+	 *
+	 * @param width The width in tiles.
+	 * @param height The height in tiles.
+	 * @param maxTile The highest tile that will be stored, this decides the type
+	 * each tile is stored as.
+	 */
+	public TileLayer(int width, int height, int maxTile) {
+		this.width = width;
+		this.height = height;
+		this.maxTile = maxTile;
+		this.chunksX = (width+CHUNK_SIZE-1) >> CHUNK_SHIFT;
+		this.chunksY = (height+CHUNK_SIZE-1) >> CHUNK_SHIFT;
+		this.chunks = new TileStorage[chunksX*chunksY];
+		this.chunkCounts = new int[chunksX*chunksY];
+		this.dirty = new boolean[chunksX*chunksY];
+	}
+
+	/**
+	 * <p>Gets the tile at x and y, the position is not bounds checked.</p>
+	 *
+	 * @param x The x position.
+	 * @param y The y position.
+	 * @return The tile, or {@code -1} if empty.
+	 */
+	public int get(int x, int y) {
+		TileStorage chunk = chunks[(x >> CHUNK_SHIFT) + ((y >> CHUNK_SHIFT) * chunksX)];
+		return (chunk == null) ? -1 : chunk.get((x & CHUNK_MASK) + ((y & CHUNK_MASK) << CHUNK_SHIFT));
+	}
+
+	/**
+	 * <p>Sets the tile at x and y, the position is not bounds checked. The chunk
+	 * is marked as dirty if the tile changed and is dropped once it only contains
+	 * empty tiles.</p>
+	 *
+	 * @param x The x position.
+	 * @param y The y position.
+	 * @param tile The new tile, or {@code -1} for empty.
+	 * @return The old tile.
+	 * @throws IllegalArgumentException Thrown if the tile is higher than the layer can hold.
+	 */
+	public int set(int x, int y, int tile) {
+		if(tile < -1 || tile > maxTile)
+			throw new IllegalArgumentException("tile " + tile + " is higher than " + maxTile);
+		int c = (x >> CHUNK_SHIFT) + ((y >> CHUNK_SHIFT) * chunksX);
+		int i = (x & CHUNK_MASK) + ((y & CHUNK_MASK) << CHUNK_SHIFT);
+		TileStorage chunk = chunks[c];
+		int old = (chunk == null) ? -1 : chunk.get(i);
+		if(old == tile)
+			return old;
+		if(chunk == null)
+			chunk = chunks[c] = TileStorage.create(CHUNK_SIZE*CHUNK_SIZE, maxTile);
+		chunk.set(i, tile);
+		if(old == -1) chunkCounts[c]++;
+		else if(tile == -1) chunkCounts[c]--;
+		if(chunkCounts[c] == 0)
+			chunks[c] = null;
+		dirty[c] = true;
+		return old;
+	}
+
+	/**
+	 * <p>Copies a rectangle of tiles into an array row by row, starting with the
+	 * row at y. Each row is copied a chunk at a time, the region is not bounds
+	 * checked.</p>
+	 *
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param dst The array to copy to, empty tiles are {@code -1}.
+	 * @param offset The index in {@code dst} to copy to.
+	 */
+	public void getRegion(int x, int y, int w, int h, int[] dst, int offset) {
+		for(int ty = y; ty < y+h; ty++) {
+			int row = (ty >> CHUNK_SHIFT) * chunksX, chunkRow = (ty & CHUNK_MASK) << CHUNK_SHIFT;
+			for(int tx = x, end = x+w; tx < end;) {
+				int length = Math.min(end, (tx | CHUNK_MASK)+1)-tx;
+				TileStorage chunk = chunks[(tx >> CHUNK_SHIFT) + row];
+				if(chunk == null)
+					Arrays.fill(dst, offset, offset+length, -1);
+				else chunk.get(chunkRow + (tx & CHUNK_MASK), dst, offset, length);
+				tx += length;
+				offset += length;
+			}
+		}
+	}
+
+	/**
+	 * <p>Copies a rectangle of tiles from an array row by row, starting with the
+	 * row at y. Each row is copied a chunk at a time and every chunk written to is
+	 * marked as dirty, the region is not bounds checked.</p>
+	 *
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param src The array to copy from, empty tiles are {@code -1}.
+	 * @param offset The index in {@code src} to copy from.
+	 * @throws IllegalArgumentException Thrown if a tile is higher than the layer can hold,
+	 * nothing is copied if this is thrown.
+	 */
+	public void setRegion(int x, int y, int w, int h, int[] src, int offset) {
+		for(int i = offset, end = offset+(w*h); i < end; i++)
+			if(src[i] < -1 || src[i] > maxTile)
+				throw new IllegalArgumentException("tile " + src[i] + " is higher than " + maxTile);
+		for(int ty = y; ty < y+h; ty++) {
+			int row = (ty >> CHUNK_SHIFT) * chunksX, chunkRow = (ty & CHUNK_MASK) << CHUNK_SHIFT;
+			for(int tx = x, end = x+w; tx < end;) {
+				int length = Math.min(end, (tx | CHUNK_MASK)+1)-tx;
+				int c = (tx >> CHUNK_SHIFT) + row;
+				if(chunks[c] == null && isEmpty(src, offset, length)) {
+					tx += length;
+					offset += length;
+					continue;
+				}
+				if(chunks[c] == null)
+					chunks[c] = TileStorage.create(CHUNK_SIZE*CHUNK_SIZE, maxTile);
+				chunkCounts[c] += chunks[c].set(chunkRow + (tx & CHUNK_MASK), src, offset, length);
+				if(chunkCounts[c] == 0)
+					chunks[c] = null;
+				dirty[c] = true;
+				tx += length;
+				offset += length;
+			}
+		}
+	}
+
+	private static boolean isEmpty(int[] tiles, int offset, int length) {
+		for(int i = offset; i < offset+length; i++)
+			if(tiles[i] != -1)
+				return false;
+		return true;
+	}
+
+	/**
+	 * <p>Marks the chunk that holds x and y as dirty without changing
+	 * its tiles, the position is not bounds checked.</p>
+	 *
+	 * @param x The x position.
+	 * @param y The y position.
+	 */
+	public void markDirty(int x, int y) {
+		dirty[(x >> CHUNK_SHIFT) + ((y >> CHUNK_SHIFT) * chunksX)] = true;
+	}
+
+	/**
+	 * <p>Gets the tiles of a chunk, these are stored in rows of
+	 * {@link TileLayer#CHUNK_SIZE}.</p>
+	 *
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @return The tiles of the chunk, or {@code null} if every tile is empty.
+	 */
+	public TileStorage getChunk(int cx, int cy) {
+		return chunks[cx + (cy * chunksX)];
+	}
+
+	/**
+	 * <p>Gets the amount of tiles in a chunk that are not empty.</p>
+	 *
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @return The amount of tiles that are not empty.
+	 */
+	public int getChunkCount(int cx, int cy) {
+		return chunkCounts[cx + (cy * chunksX)];
+	}
+
+	/**
+	 * <p>Gets whether a chunk has changed since its dirty flag was last
+	 * cleared.</p>
+	 *
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @return Whether the chunk is dirty.
+	 */
+	public boolean isDirty(int cx, int cy) {
+		return dirty[cx + (cy * chunksX)];
+	}
+
+	/**
+	 * <p>Clears the dirty flag of a chunk.</p>
+	 *
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 */
+	public void clearDirty(int cx, int cy) {
+		dirty[cx + (cy * chunksX)] = false;
+	}
+
+	/**
+	 * <p>Clears the dirty flag of every chunk.</p>
+	 */
+	public void clearDirty() {
+		Arrays.fill(dirty, false);
+	}
+
+	/**
+	 * <p>Gets the width of the layer in tiles.</p>
+	 *
+	 * @return The width in tiles.
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * <p>Gets the height of the layer in tiles.</p>
+	 *
+	 * @return The height in tiles.
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * <p>Gets the highest tile this layer can hold.</p>
+	 *
+	 * @return The highest tile.
+	 */
+	public int getMaxTile() {
+		return this.maxTile;
+	}
+
+	/**
+	 * <p>Gets the amount of bytes used by the tiles of the chunks that are
+	 * allocated.</p>
+	 *
+	 * @return The amount of bytes.
+	 */
+	public long getTileBytes() {
+		long bytes = 0;
+		for(TileStorage chunk : chunks)
+			if(chunk != null) bytes += (long)chunk.size()*chunk.getBytesPerTile();
+		return bytes;
+	}
+
+	/**
+	 * <p>Gets the amount of chunk columns.</p>
+	 *
+	 * @return The amount of chunk columns.
+	 */
+	public int getChunksX() {
+		return this.chunksX;
+	}
+
+	/**
+	 * <p>Gets the amount of chunk rows.</p>
+	 *
+	 * @return The amount of chunk rows.
+	 */
+	public int getChunksY() {
+		return this.chunksY;
+	}
+
+}
@@ -1,75 +1,374 @@
 package com.pokedroid.map;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.JsonValue;
 import com.pokedroid.entity.Entity;
+import com.pokedroid.entity.EntityDirection;
+import com.pokedroid.entity.EntityList;
+import com.pokedroid.entity.EntityRenderOrder;
+import com.pokedroid.util.RenderStats;
 
 /**
  * <p>The {@code TileMap} class is used to render an entire map.</p>
  * 
+ * <p>The tiles of a map that is far from the player can be unloaded by a
+ * {@link MapResidency}, they are packed into a small compressed array and are
+ * reloaded as soon as anything reads them again. They can also be reloaded ahead
+ * of time on a worker thread by a {@link MapPrefetcher}, so loading and unloading
+ * the tiles is synchronized.</p>
+ * 
  * @author PoketronHacker
  * @version v1.0
  * @since v1.0
  *
  */
-public class TileMap {
+public class TileMap implements PathGrid {
 
 	private String name;
 	private int width, height, layerCount;
-	private int[][] tiles;
+	private TileLayer[] layers;
+	private byte[] firstVisibleLayer;
+	private byte[] cellFlags;
 	private TileSet tileset;
-	private List<Entity> entityList;
-	private Map<String, MapConnection> connectionMaps;
+	private EntityList entityList;
+	private EntityRenderOrder renderOrder;
+	private OccupancyGrid occupancy;
+	private PathCache pathCache;
+	private int tileVersion;
+	private World world;
+	private int worldX, worldY;
+	private MapConnection[] connections;
 	private JsonValue mapJson;
 	private Music music;
+	private TileMapCache cache;
+	private int cacheUsers;
+	private boolean cacheRetained;
+	private byte[] packedTiles;
+	private int packedMaxTile;
+	private MapResidency residency;
+	private volatile boolean resident;
 
 	/**
-	 * <p>Creates a new {@code TileMap} from a JSON file.</p>
+	 * <p>Creates a new {@code TileMap} from a JSON file, each layer of the tiles
+	 * is either an array or a string written with a {@link LayerEncoding}.</p>
 	 * 
 	 * @param map The json value.
 	 * @param tileset The tileset this map is using.
 	 * @throws MapInitialisationException Thrown if a problem occurs during initialisation.
 	 */
 	public TileMap(JsonValue map, TileSet tileset) {
-		this.mapJson = map;
-		this.tileset = tileset;
-		this.entityList = Collections.synchronizedList(new ArrayList<Entity>());
-		this.connectionMaps = Collections.synchronizedMap(new HashMap<String, MapConnection>());
-		this.name = map.getString("name");
-		this.width = map.getInt("width");
-		this.height = map.getInt("height");
-		this.layerCount = map.getInt("layers");
-		if(map.get("tiles").size != layerCount)
+		this(map, tileset, map.getInt("width"), map.getInt("height"), map.getInt("layers"));
+		JsonValue tileArray = map.get("tiles");
+		if(tileArray == null || tileArray.size != layerCount)
 			throw new MapInitialisationException("Layer count mismatch");
-		for(int i = 0; i < layerCount; i++)
-			if(map.get("tiles").get(i).size != (width*height))
-				throw new MapInitialisationException("Tile count mismatch on layer " + i);
-		this.tiles = new int[layerCount][width*height];
-		for(int l = 0; l < layerCount; l++) {
+		int idOffset = map.getInt("id_offset", 0);
+		int[] tiles = new int[layerCount*width*height], layerTiles = new int[width*height];
+		int maxTile = tileset.getTileCount()-1, l = 0;
+		for(JsonValue layer = tileArray.child; layer != null; layer = layer.next, l++) {
+			if(layer.isString()) {
+				LayerEncoding.decode(layer.asString(), layerTiles, 0, width*height);
+			} else {
+				if(layer.size != (width*height))
+					throw new MapInitialisationException("Tile count mismatch on layer " + l);
+				int i = 0;
+				for(JsonValue v = layer.child; v != null; v = v.next)
+					layerTiles[i++] = v.asInt();
+			}
+			// The JSON rows start from the top, the layers start from the bottom.
 			for(int y = 0; y < height; y++) {
+				int row = (l*width*height) + (((height-1)-y) * width);
 				for(int x = 0; x < width; x++) {
-					int rel_y = (height-1)-y;
-					tiles[l][x + (rel_y * width)] = map.get("tiles").get(l).getInt(x + (y * width))+map.getInt("id_offset", 0);
+					int tile = layerTiles[x + (y * width)]+idOffset;
+					tiles[row+x] = tile;
+					maxTile = Math.max(maxTile, tile);
 				}
 			}
 		}
+		loadTiles(tiles, maxTile);
+		// The tiles are the bulk of the JSON and are not read again.
+		map.remove("tiles");
+	}
+
+	/**
+	 * <p>Creates a new {@code TileMap} from a map compiled into the binary map
+	 * format, the tiles are read straight into the layers.</p>
+	 * 
+	 * @param file The map file.
+	 * @param tileset The tileset this map is using.
+	 * @throws MapInitialisationException Thrown if a problem occurs during initialisation.
+	 */
+	public TileMap(MapFile file, TileSet tileset) {
+		this(file.getProperties(), tileset, file.getWidth(), file.getHeight(), file.getLayerCount());
+		int[] tiles = new int[layerCount*width*height];
+		int maxTile = Math.max(tileset.getTileCount()-1, file.readTiles(tiles));
+		loadTiles(tiles, maxTile);
+	}
+
+	/**
+	 * <p>Sets up everything but the tiles of a new {@code TileMap}.</p>
+	 * 
+	 * @param map The properties of the map.
+	 * @param tileset The tileset this map is using.
+	 * @param width The width in tiles.
+	 * @param height The height in tiles.
+	 * @param layerCount The amount of layers.
+	 */
+	private TileMap(JsonValue map, TileSet tileset, int width, int height, int layerCount) {
+		if(tileset == null)
+			throw new MapInitialisationException("Unknown tileset " + map.getString("tileset", null));
+		this.mapJson = map;
+		this.tileset = tileset;
+		this.entityList = new EntityList();
+		this.renderOrder = new EntityRenderOrder();
+		this.connections = new MapConnection[EntityDirection.values().length];
+		this.name = map.getString("name");
+		this.width = width;
+		this.height = height;
+		this.layerCount = layerCount;
+		this.occupancy = new OccupancyGrid(width, height);
+	}
+
+	/**
+	 * <p>Creates the layers from the tiles of every layer, one layer after another
+	 * with the rows of each starting from the bottom, and works out the occlusion
+	 * and cell flags.</p>
+	 * 
+	 * @param tiles The tiles.
+	 * @param maxTile The highest tile that will be stored.
+	 */
+	private void loadTiles(int[] tiles, int maxTile) {
+		this.layers = new TileLayer[layerCount];
+		for(int l = 0; l < layerCount; l++) {
+			layers[l] = new TileLayer(width, height, maxTile);
+			layers[l].setRegion(0, 0, width, height, tiles, l*width*height);
+		}
+		this.firstVisibleLayer = new byte[width*height];
+		this.cellFlags = new byte[width*height];
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				updateOcclusion(x, y);
+				updateCellFlags(x, y);
+			}
+		}
+		for(int l = 0; l < layerCount; l++)
+			layers[l].clearDirty();
+		this.resident = true;
+	}
+
+	/**
+	 * <p>Reloads the tiles of this map if they have been unloaded.</p>
+	 */
+	void requireTiles() {
+		if(resident)
+			return;
+		synchronized(this) {
+			if(resident)
+				return;
+			reloadTiles();
+		}
+		// This is told outside of the lock so the locks are always taken in the same order.
+		if(residency != null)
+			residency.reloaded(this);
+	}
+
+	/**
+	 * <p>Packs the tiles of this map into a compressed array and frees the layers,
+	 * the cell flags, the occupancy and the {@link TileMapCache}. A map that has
+	 * entities on it or that has its cache in use is not unloaded.</p>
+	 * 
+	 * @return Whether the tiles are unloaded.
+	 */
+	synchronized boolean unloadTiles() {
+		if(!resident)
+			return true;
+		if(entityList.size() > 0 || cacheUsers > 0)
+			return false;
+		int size = width*height, maxTile = layers[0].getMaxTile();
+		int bytesPerTile = getPackedBytesPerTile(maxTile);
+		int[] tiles = new int[size];
+		byte[] raw = new byte[layerCount*size*bytesPerTile];
+		int pos = 0;
+		for(int l = 0; l < layerCount; l++) {
+			layers[l].getRegion(0, 0, width, height, tiles, 0);
+			for(int i = 0; i < size; i++) {
+				int tile = tiles[i]+1;
+				for(int b = 0; b < bytesPerTile; b++)
+					raw[pos++] = (byte)(tile >>> (b << 3));
+			}
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length/8));
+		byte[] buffer = new byte[4096];
+		while(!deflater.finished())
+			out.write(buffer, 0, deflater.deflate(buffer));
+		deflater.end();
+		this.packedTiles = out.toByteArray();
+		this.packedMaxTile = maxTile;
+		this.resident = false;
+		this.layers = null;
+		this.firstVisibleLayer = null;
+		this.cellFlags = null;
+		this.occupancy = null;
+		this.pathCache = null;
+		disposeCache();
+		return true;
+	}
+
+	/**
+	 * <p>Unpacks the tiles that were packed by {@link TileMap#unloadTiles()}.</p>
+	 * 
+	 * @throws MapInitialisationException Thrown if the packed tiles are corrupt.
+	 */
+	private void reloadTiles() {
+		int size = width*height, bytesPerTile = getPackedBytesPerTile(packedMaxTile);
+		byte[] raw = new byte[layerCount*size*bytesPerTile];
+		Inflater inflater = new Inflater();
+		inflater.setInput(packedTiles);
+		try {
+			int read = 0;
+			while(read < raw.length && !inflater.finished()) {
+				int n = inflater.inflate(raw, read, raw.length-read);
+				if(n == 0 && inflater.needsInput())
+					break;
+				read += n;
+			}
+			if(read != raw.length)
+				throw new MapInitialisationException("Packed tiles of " + name + " are truncated");
+		} catch (DataFormatException e) {
+			throw new MapInitialisationException("Packed tiles of " + name + " are corrupt");
+		} finally {
+			inflater.end();
+		}
+		int[] tiles = new int[layerCount*size];
+		for(int i = 0, pos = 0; i < tiles.length; i++) {
+			int tile = 0;
+			for(int b = 0; b < bytesPerTile; b++)
+				tile |= (raw[pos++] & 0xFF) << (b << 3);
+			tiles[i] = tile-1;
+		}
+		this.occupancy = new OccupancyGrid(width, height);
+		loadTiles(tiles, packedMaxTile);
+		this.packedTiles = null;
+	}
+
+	private static int getPackedBytesPerTile(int maxTile) {
+		if(maxTile <= TileStorage.BYTE_MAX_TILE) return 1;
+		if(maxTile <= TileStorage.CHAR_MAX_TILE) return 2;
+		return 4;
+	}
+
+	/**
+	 * <p>Gets whether the tiles of this map are loaded.</p>
+	 * 
+	 * @return Whether the tiles are loaded.
+	 */
+	public boolean isResident() {
+		return resident;
+	}
+
+	/**
+	 * <p>Gets roughly how much memory the tiles of this map hold, this is the
+	 * layers, the cell flags, the occlusion and the occupancy while they are loaded
+	 * or the packed tiles once they are unloaded.</p>
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public synchronized long getResidentBytes() {
+		if(!resident)
+			return (packedTiles == null) ? 0 : packedTiles.length;
+		// A byte each for the flags and occlusion and a reference for the occupancy.
+		long bytes = 6L*width*height;
+		for(TileLayer layer : layers)
+			bytes += layer.getTileBytes();
+		return bytes;
+	}
+
+	/**
+	 * <p>Sets the {@code MapResidency} managing the tiles of this map, it is told
+	 * when this map is entered.</p>
+	 * 
+	 * @param residency The residency manager, or {@code null}.
+	 */
+	void setResidency(MapResidency residency) {
+		this.residency = residency;
+	}
+
+	/**
+	 * <p>Combines the {@link TileSet} flags of the tiles on every layer at
+	 * x and y into the flags of the cell.</p>
+	 * 
+	 * @param x The x position.
+	 * @param y The y position.
+	 */
+	private void updateCellFlags(int x, int y) {
+		int flags = 0;
+		for(int l = 0; l < layerCount; l++) {
+			int tile = layers[l].get(x, y);
+			if(tile != -1)
+				flags |= tileset.getFlags(tile);
+		}
+		int i = x + (y * width);
+		if(cellFlags[i] != (byte)flags) {
+			cellFlags[i] = (byte)flags;
+			tileVersion++;
+		}
+	}
+
+	/**
+	 * <p>Works out the lowest layer that can be seen at x and y, every layer
+	 * beneath the highest fully opaque tile is hidden. If this changes then the
+	 * chunks of the layers that were shown or hidden are marked as dirty.</p>
+	 * 
+	 * @param x The x position.
+	 * @param y The y position.
+	 */
+	private void updateOcclusion(int x, int y) {
+		int first = 0;
+		for(int l = layerCount-1; l > 0; l--) {
+			int tile = layers[l].get(x, y);
+			if(tile != -1 && tileset.isOpaque(tile)) {
+				first = l;
+				break;
+			}
+		}
+		int old = firstVisibleLayer[x + (y * width)];
+		if(old == first)
+			return;
+		firstVisibleLayer[x + (y * width)] = (byte)first;
+		for(int l = Math.min(old, first); l < Math.max(old, first); l++)
+			layers[l].markDirty(x, y);
 	}
 
 	/**
 	 * <p>The event to do on entry of this {@code TileMap}.</p>
 	 */
 	public void onEnter() {
+		if(residency != null)
+			residency.update(this);
+		requireTiles();
 		if(music != null && !music.isPlaying()) {
 			music.setLooping(true);
 			music.play();
 		}
+		if(TileMapCache.isEnabled() && !cacheRetained) {
+			retainCache();
+			for(MapConnection c : connections)
+				if(c != null) c.map.retainCache();
+			cacheRetained = true;
+		}
+		TileMapCache.freeReleased();
 	}
 
 	/**
@@ -77,6 +376,66 @@ public class TileMap {
 	 */
 	public void onExit() {
 		if(music != null && music.isPlaying()) music.stop();
+		if(cacheRetained) {
+			releaseCache();
+			for(MapConnection c : connections)
+				if(c != null) c.map.releaseCache();
+			cacheRetained = false;
+		}
+	}
+
+	/**
+	 * <p>Marks the {@link TileMapCache} of this {@code TileMap} as in use,
+	 * compiling it if it does not exist.</p>
+	 */
+	void retainCache() {
+		if(cacheUsers++ == 0 && cache == null)
+			cache = new TileMapCache(this);
+	}
+
+	/**
+	 * <p>Marks the {@link TileMapCache} of this {@code TileMap} as no longer
+	 * used by a map that was exited.</p>
+	 */
+	void releaseCache() {
+		if(cacheUsers > 0 && --cacheUsers == 0)
+			TileMapCache.release(this);
+	}
+
+	/**
+	 * <p>Compiles the {@link TileMapCache} ahead of this map being entered, this
+	 * must be called on the rendering thread.</p>
+	 */
+	void prepareCache() {
+		if(needsCache())
+			cache = new TileMapCache(this);
+	}
+
+	/**
+	 * <p>Gets whether the {@link TileMapCache} is enabled and has not been compiled
+	 * for the loaded tiles.</p>
+	 * 
+	 * @return Whether the cache needs to be compiled.
+	 */
+	boolean needsCache() {
+		return TileMapCache.isEnabled() && resident && cache == null;
+	}
+
+	/**
+	 * <p>Frees the {@link TileMapCache} if no entered map is using it.</p>
+	 */
+	void freeCacheIfUnused() {
+		if(cacheUsers == 0)
+			disposeCache();
+	}
+
+	/**
+	 * <p>Frees the {@link TileMapCache} of this {@code TileMap}.</p>
+	 */
+	public void disposeCache() {
+		if(cache != null)
+			cache.dispose();
+		cache = null;
 	}
 
 	/**
@@ -92,29 +451,61 @@ public class TileMap {
 
 	/**
 	 * <p>Links the maps with a map list, this is used to ensure
-	 * all maps are loaded.</p>
+	 * all maps are loaded. The connections are stored by the
+	 * {@link EntityDirection} they are in.</p>
 	 * 
 	 * @param maps The maps to link.
 	 */
 	public void linkMaps(Map<String, TileMap> maps) {
-		connectionMaps.clear();
+		Arrays.fill(connections, null);
 		if(!mapJson.has("connections"))
 			return;
 		JsonValue conn = mapJson.get("connections");
 		for(int i = 0; i < conn.size; i++) {
 			JsonValue connection = conn.get(i);
 			if(connection.name.endsWith("_offset")) continue;
+			EntityDirection direction = getDirection(connection.name);
+			if(direction == null) {
+				System.err.println("[TileMap] Unknown connection " + connection.name + " in " + toString());
+				continue;
+			}
 			if(maps.containsKey(connection.asString())) {
-				connectionMaps.put(connection.name, new MapConnection(maps.get(connection.asString()),
-						conn.getInt(connection.name + "_offset", 0)));
+				connections[direction.ordinal()] = new MapConnection(this, maps.get(connection.asString()),
+						direction, conn.getInt(connection.name + "_offset", 0));
 				System.out.println("Successfully connected map: " +
 						toString() + " to " + maps.get(connection.asString()).toString() + " with offset " +
-						connectionMaps.get(connection.name).offset);
+						connections[direction.ordinal()].offset);
 			} else throw new NullPointerException("unable to find map connection " +
 					connection.asString() + " in " + toString());
 		}
 	}
 
+	/**
+	 * <p>Gets the direction of a connection from its name.</p>
+	 * 
+	 * @param connectionName The name of the connection, such as {@code north}.
+	 * @return The direction, or {@code null} if the name is not a direction.
+	 */
+	public static EntityDirection getDirection(String connectionName) {
+		if(connectionName.equals("north")) return EntityDirection.DIRECTION_UP;
+		if(connectionName.equals("south")) return EntityDirection.DIRECTION_DOWN;
+		if(connectionName.equals("east")) return EntityDirection.DIRECTION_RIGHT;
+		if(connectionName.equals("west")) return EntityDirection.DIRECTION_LEFT;
+		return null;
+	}
+
+	/**
+	 * <p>Updates the animated tiles of this map and the maps it is connected
+	 * to.</p>
+	 * 
+	 * @param time The time of the {@link com.pokedroid.util.AnimationClock}.
+	 */
+	public void updateAnimations(double time) {
+		tileset.updateAnimations(time);
+		for(MapConnection c : connections)
+			if(c != null) c.map.getTileset().updateAnimations(time);
+	}
+
 	/**
 	 * <p>Renders this map onto a batch with an offset.</p>
 	 * 
@@ -124,14 +515,99 @@ public class TileMap {
 	 * @param offsetY The y offset.
 	 */
 	public void render(Batch batch, int l, float offsetX, float offsetY) {
-		for(int y = 0; y < height; y++) {
-			for(int x = 0; x < width; x++) {
-				if(tiles[l][x + (y * width)] == -1)
+		renderRegion(batch, l, offsetX, offsetY, 0, 0, width-1, height-1);
+	}
+
+	/**
+	 * <p>Renders the part of this map that is within the view onto a batch
+	 * with an offset, a margin of one tile is kept around the view so tiles
+	 * do not pop in at the edges.</p>
+	 * 
+	 * @param batch The batch to render onto.
+	 * @param l The layer to render.
+	 * @param offsetX The x offset.
+	 * @param offsetY The y offset.
+	 * @param view The visible area in world coordinates.
+	 * @param stats The stats to count the tiles drawn into, may be {@code null}.
+	 */
+	public void render(Batch batch, int l, float offsetX, float offsetY, Rectangle view, RenderStats stats) {
+		int tw = tileset.getWidth(), th = tileset.getHeight();
+		int viewX = (int)Math.floor((view.x-offsetX)/tw), viewY = (int)Math.floor((view.y-offsetY)/th);
+		int viewEndX = (int)Math.floor((view.x+view.width-offsetX)/tw);
+		int viewEndY = (int)Math.floor((view.y+view.height-offsetY)/th);
+		int startX = Math.max(0, viewX-1);
+		int startY = Math.max(0, viewY-1);
+		int endX = Math.min(width-1, viewEndX+1);
+		int endY = Math.min(height-1, viewEndY+1);
+		int submitted = renderRegion(batch, l, offsetX, offsetY, startX, startY, endX, endY);
+		if(stats != null)
+			stats.addTiles(submitted, stats.isProfiling() ? countTiles(l, viewX, viewY, viewEndX, viewEndY) : 0);
+	}
+
+	/**
+	 * <p>Renders the tiles between two tile positions inclusively, tiles that
+	 * are hidden are skipped.</p>
+	 * 
+	 * @param batch The batch to render onto.
+	 * @param l The layer to render.
+	 * @param offsetX The x offset.
+	 * @param offsetY The y offset.
+	 * @param startX The first column.
+	 * @param startY The first row.
+	 * @param endX The last column.
+	 * @param endY The last row.
+	 * @return The amount of tiles drawn.
+	 */
+	private int renderRegion(Batch batch, int l, float offsetX, float offsetY,
+			int startX, int startY, int endX, int endY) {
+		requireTiles();
+		int count = 0;
+		TileLayer layer = layers[l];
+		for(int cy = startY >> TileLayer.CHUNK_SHIFT; cy <= endY >> TileLayer.CHUNK_SHIFT; cy++) {
+			for(int cx = startX >> TileLayer.CHUNK_SHIFT; cx <= endX >> TileLayer.CHUNK_SHIFT; cx++) {
+				TileStorage chunk = layer.getChunk(cx, cy);
+				if(chunk == null)
 					continue;
-				batch.draw(tileset.getTile(tiles[l][x + (y * width)]),
-						(x*tileset.getWidth())+offsetX, (y*tileset.getHeight())+offsetY);
+				int baseX = cx << TileLayer.CHUNK_SHIFT, baseY = cy << TileLayer.CHUNK_SHIFT;
+				int x0 = Math.max(startX, baseX), x1 = Math.min(endX, baseX+TileLayer.CHUNK_MASK);
+				int y0 = Math.max(startY, baseY), y1 = Math.min(endY, baseY+TileLayer.CHUNK_MASK);
+				for(int y = y0; y <= y1; y++) {
+					for(int x = x0; x <= x1; x++) {
+						int tile = chunk.get((x-baseX) + ((y-baseY) << TileLayer.CHUNK_SHIFT));
+						if(tile == -1 || l < firstVisibleLayer[x + (y * width)] || tileset.isTransparent(tile))
+							continue;
+						batch.draw(tileset.getTile(tile),
+								(x*tileset.getWidth())+offsetX, (y*tileset.getHeight())+offsetY);
+						count++;
+					}
+				}
 			}
 		}
+		return count;
+	}
+
+	/**
+	 * <p>Counts the tiles that are not empty between two tile positions
+	 * inclusively, positions outside of the map are ignored.</p>
+	 * 
+	 * @param l The layer.
+	 * @param startX The first column.
+	 * @param startY The first row.
+	 * @param endX The last column.
+	 * @param endY The last row.
+	 * @return The amount of tiles.
+	 */
+	public int countTiles(int l, int startX, int startY, int endX, int endY) {
+		requireTiles();
+		int count = 0;
+		startX = Math.max(0, startX);
+		startY = Math.max(0, startY);
+		endX = Math.min(width-1, endX);
+		endY = Math.min(height-1, endY);
+		for(int y = startY; y <= endY; y++)
+			for(int x = startX; x <= endX; x++)
+				if(layers[l].get(x, y) != -1) count++;
+		return count;
 	}
 
 	/**
@@ -143,38 +619,126 @@ public class TileMap {
 	 * @param offsetY The offset y.
 	 */
 	public void renderConnections(Batch batch, int l, float offsetX, float offsetY) {
-		if(connectionMaps.containsKey("south")) {
-			connectionMaps.get("south").map
-				.render(batch, l, offsetX
-						+connectionMaps.get("south").offset*connectionMaps.get("south").map.getTileset().getWidth(),
-						(-connectionMaps.get("south").map.getFullHeight())+offsetY);
+		for(MapConnection c : connections) {
+			if(c != null)
+				c.map.render(batch, l, c.pixelX+offsetX, c.pixelY+offsetY);
 		}
-		if(connectionMaps.containsKey("north")) {
-			connectionMaps.get("north").map
-				.render(batch, l, offsetX
-						+connectionMaps.get("north").offset*connectionMaps.get("north").map.getTileset().getWidth(),
-						(getFullHeight())+offsetY);
+	}
+
+	/**
+	 * <p>Renders the parts of the connections that are within the view.</p>
+	 * 
+	 * @param batch The batch to render onto.
+	 * @param l The layer to render.
+	 * @param offsetX The offset x.
+	 * @param offsetY The offset y.
+	 * @param view The visible area in world coordinates.
+	 * @param stats The stats to count the tiles drawn into, may be {@code null}.
+	 */
+	public void renderConnections(Batch batch, int l, float offsetX, float offsetY, Rectangle view,
+			RenderStats stats) {
+		for(MapConnection c : connections) {
+			if(c != null && c.isVisible(offsetX, offsetY, view))
+				c.map.render(batch, l, c.pixelX+offsetX, c.pixelY+offsetY, view, stats);
+		}
+	}
+
+	/**
+	 * <p>Renders a layer of this map from its {@link TileMapCache}, only the
+	 * chunks within the view are drawn. This must not be called between
+	 * {@code begin} and {@code end} of a batch.</p>
+	 * 
+	 * @param projection The projection matrix of the camera.
+	 * @param l The layer to render.
+	 * @param offsetX The x offset.
+	 * @param offsetY The y offset.
+	 * @param view The visible area in world coordinates.
+	 * @param stats The stats to count the tiles drawn into, may be {@code null}.
+	 */
+	public void renderCached(Matrix4 projection, int l, float offsetX, float offsetY, Rectangle view,
+			RenderStats stats) {
+		if(cache == null)
+			cache = new TileMapCache(this);
+		cache.render(projection, l, offsetX, offsetY, view, stats);
+	}
+
+	/**
+	 * <p>Renders the connections the player can move onto from their
+	 * {@link TileMapCache}.</p>
+	 * 
+	 * @param projection The projection matrix of the camera.
+	 * @param l The layer to render.
+	 * @param offsetX The offset x.
+	 * @param offsetY The offset y.
+	 * @param view The visible area in world coordinates.
+	 * @param stats The stats to count the tiles drawn into, may be {@code null}.
+	 */
+	public void renderConnectionsCached(Matrix4 projection, int l, float offsetX, float offsetY, Rectangle view,
+			RenderStats stats) {
+		for(MapConnection c : connections) {
+			if(c != null && c.isVisible(offsetX, offsetY, view))
+				c.map.renderCached(projection, l, c.pixelX+offsetX, c.pixelY+offsetY, view, stats);
 		}
 	}
 
 	/**
 	 * <p>Checks whether the tile at x, y is solid or not, this
-	 * tests all layers.</p>
+	 * tests all layers using the flags of the cell.</p>
 	 * 
 	 * @param x The x coordinate.
 	 * @param y The y coordinate.
 	 * @return Whether the player can move there.
 	 */
 	public boolean canMove(int x, int y) {
+		requireTiles();
 		if(x < 0 || x >= width
 				|| y < 0 || y >= height)
 			return false;
-		for(int l = 0; l < layerCount; l++) {
-			if(tiles[l][x + (y * width)] == -1) continue;
-			if(tileset.isSolid(tiles[l][x + (y * width)]))
-				return false;
-		}
-		return true;
+		return (cellFlags[x + (y * width)] & TileSet.SOLID_FLAG) == 0;
+	}
+
+	/**
+	 * <p>Checks whether an entity can move onto the tile at x, y, the
+	 * tile must not be solid or held by another entity within the
+	 * {@link OccupancyGrid}.</p>
+	 * 
+	 * @param mover The entity that is moving, may be {@code null}.
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return Whether the entity can move there.
+	 */
+	public boolean canMove(Entity mover, int x, int y) {
+		return canMove(x, y) && !occupancy.isOccupied(x, y, mover);
+	}
+
+	/**
+	 * <p>Gets the entity standing on or moving onto the tile at x, y.</p>
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return The entity, or {@code null} if there is none.
+	 */
+	public Entity getEntityAt(int x, int y) {
+		requireTiles();
+		return occupancy.get(x, y);
+	}
+
+	/**
+	 * <p>Gets the flags of the cell at x and y, these are the {@link TileSet}
+	 * flags of the tiles on every layer combined, such as {@link TileSet#SOLID_FLAG}
+	 * or {@link TileSet#LEDGE_FLAG_DOWN}. They are worked out when the map is loaded
+	 * and when a tile is set.</p>
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return The flags of the cell, a cell outside of the map is solid.
+	 */
+	public int getCellFlags(int x, int y) {
+		requireTiles();
+		if(x < 0 || x >= width
+				|| y < 0 || y >= height)
+			return TileSet.SOLID_FLAG;
+		return cellFlags[x + (y * width)];
 	}
 
 	/**
@@ -185,7 +749,8 @@ public class TileMap {
 	 * @return Whether the {@code TileMap} has a connection.
 	 */
 	public boolean hasConnection(String connectionName) {
-		return connectionMaps.containsKey(connectionName);
+		EntityDirection direction = getDirection(connectionName);
+		return direction != null && connections[direction.ordinal()] != null;
 	}
 
 	/**
@@ -195,7 +760,28 @@ public class TileMap {
 	 * @return The {@code MapConnection}.
 	 */
 	public MapConnection getConnection(String connectionName) {
-		return connectionMaps.get(connectionName);
+		EntityDirection direction = getDirection(connectionName);
+		return (direction == null) ? null : connections[direction.ordinal()];
+	}
+
+	/**
+	 * <p>Gets the {@code MapConnection} in a direction.</p>
+	 * 
+	 * @param direction The direction of the connection.
+	 * @return The {@code MapConnection}, or {@code null} if there is no connection.
+	 */
+	public MapConnection getConnection(EntityDirection direction) {
+		return connections[direction.ordinal()];
+	}
+
+	/**
+	 * <p>Gets the connections indexed by the ordinal of their {@link EntityDirection},
+	 * directions without a connection are {@code null}.</p>
+	 * 
+	 * @return The connections.
+	 */
+	public MapConnection[] getConnections() {
+		return this.connections;
 	}
 
 	/**
@@ -216,11 +802,179 @@ public class TileMap {
 	 * @return The tile at x and y.
 	 */
 	public int getTile(int l, int x, int y) {
-		if(l < 0 || l >= tiles.length)
+		requireTiles();
+		if(l < 0 || l >= layers.length)
 			return -1;
 		if(x < 0 || x >= width || y < 0 || y >= height)
 			return -1;
-		return tiles[l][x + (y * width)];
+		return layers[l].get(x, y);
+	}
+
+	/**
+	 * <p>Sets the tile at an x and y, the chunk the tile is in is marked
+	 * as dirty so that only that chunk is rebuilt.</p>
+	 * 
+	 * @param l The layer.
+	 * @param x The x position.
+	 * @param y The y position.
+	 * @param tile The new tile, or {@code -1} for no tile.
+	 * @return The old tile.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException Thrown if the layer or position is out of bounds.
+	 * @throws IllegalArgumentException Thrown if the tile is higher than the map can hold.
+	 */
+	public int setTile(int l, int x, int y, int tile) {
+		requireTiles();
+		if(l < 0 || l >= layers.length)
+			throw new ArrayIndexOutOfBoundsException(l);
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new ArrayIndexOutOfBoundsException(x + (y * width));
+		int old = layers[l].set(x, y, tile);
+		if(old != tile) {
+			updateOcclusion(x, y);
+			updateCellFlags(x, y);
+		}
+		return old;
+	}
+
+	/**
+	 * <p>Copies a rectangle of tiles of a layer into an array, row by row from
+	 * the row at y upwards. This checks the bounds once for the whole region
+	 * rather than once for each tile.</p>
+	 * 
+	 * @param l The layer.
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param dst The array to copy to, empty tiles are {@code -1}.
+	 * @param offset The index in {@code dst} to copy to.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException Thrown if the layer or region is out of bounds,
+	 * or the array is too small.
+	 */
+	public void getRegion(int l, int x, int y, int w, int h, int[] dst, int offset) {
+		checkRegion(l, l+1, x, y, w, h, dst, offset);
+		layers[l].getRegion(x, y, w, h, dst, offset);
+	}
+
+	/**
+	 * <p>Copies a rectangle of tiles of every layer into an array, the region of
+	 * each layer follows the one before it, see {@link TileMap#getRegion(int, int, int, int, int, int[], int)}.</p>
+	 * 
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param dst The array to copy to, it must hold {@code layers*w*h} tiles.
+	 * @param offset The index in {@code dst} to copy to.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException Thrown if the region is out of bounds,
+	 * or the array is too small.
+	 */
+	public void getRegion(int x, int y, int w, int h, int[] dst, int offset) {
+		checkRegion(0, layerCount, x, y, w, h, dst, offset);
+		for(int l = 0; l < layerCount; l++)
+			layers[l].getRegion(x, y, w, h, dst, offset+(l*w*h));
+	}
+
+	/**
+	 * <p>Sets a rectangle of tiles of a layer from an array, row by row from
+	 * the row at y upwards. The chunks, occlusion and cell flags of the region
+	 * are updated once the tiles have been copied.</p>
+	 * 
+	 * @param l The layer.
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param src The array to copy from, empty tiles are {@code -1}.
+	 * @param offset The index in {@code src} to copy from.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException Thrown if the layer or region is out of bounds,
+	 * or the array is too small.
+	 * @throws IllegalArgumentException Thrown if a tile is higher than the map can hold.
+	 */
+	public void setRegion(int l, int x, int y, int w, int h, int[] src, int offset) {
+		checkRegion(l, l+1, x, y, w, h, src, offset);
+		layers[l].setRegion(x, y, w, h, src, offset);
+		updateRegion(x, y, w, h);
+	}
+
+	/**
+	 * <p>Sets a rectangle of tiles of every layer from an array laid out like
+	 * {@link TileMap#getRegion(int, int, int, int, int[], int)}.</p>
+	 * 
+	 * @param x The first x position.
+	 * @param y The first y position.
+	 * @param w The width of the region in tiles.
+	 * @param h The height of the region in tiles.
+	 * @param src The array to copy from, it must hold {@code layers*w*h} tiles.
+	 * @param offset The index in {@code src} to copy from.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException Thrown if the region is out of bounds,
+	 * or the array is too small.
+	 * @throws IllegalArgumentException Thrown if a tile is higher than the map can hold.
+	 */
+	public void setRegion(int x, int y, int w, int h, int[] src, int offset) {
+		checkRegion(0, layerCount, x, y, w, h, src, offset);
+		for(int l = 0; l < layerCount; l++)
+			layers[l].setRegion(x, y, w, h, src, offset+(l*w*h));
+		updateRegion(x, y, w, h);
+	}
+
+	/**
+	 * <p>Checks that a range of layers and a region are within the map and that
+	 * an array can hold the tiles of the region on every layer in the range.</p>
+	 */
+	private void checkRegion(int firstLayer, int endLayer, int x, int y, int w, int h, int[] tiles, int offset) {
+		requireTiles();
+		if(firstLayer < 0 || endLayer > layers.length)
+			throw new ArrayIndexOutOfBoundsException(firstLayer);
+		if(w < 0 || h < 0 || x < 0 || y < 0 || x+w > width || y+h > height)
+			throw new ArrayIndexOutOfBoundsException("region " + x + "," + y + " " + w + "x" + h
+					+ " is outside of " + this);
+		if(offset < 0 || offset+((long)(endLayer-firstLayer)*w*h) > tiles.length)
+			throw new ArrayIndexOutOfBoundsException(offset);
+	}
+
+	/**
+	 * <p>Works out the occlusion and cell flags of every tile in a region.</p>
+	 */
+	private void updateRegion(int x, int y, int w, int h) {
+		for(int ty = y; ty < y+h; ty++) {
+			for(int tx = x; tx < x+w; tx++) {
+				updateOcclusion(tx, ty);
+				updateCellFlags(tx, ty);
+			}
+		}
+	}
+
+	/**
+	 * <p>Gets whether the tile on a layer at x and y does not need to be drawn,
+	 * this is when it is empty, fully transparent or covered by a fully opaque
+	 * tile on a higher layer. The position is not bounds checked.</p>
+	 * 
+	 * @param l The layer.
+	 * @param x The x position.
+	 * @param y The y position.
+	 * @return Whether the tile is hidden.
+	 */
+	public boolean isHidden(int l, int x, int y) {
+		requireTiles();
+		int tile = layers[l].get(x, y);
+		return tile == -1 || l < firstVisibleLayer[x + (y * width)] || tileset.isTransparent(tile);
+	}
+
+	/**
+	 * <p>Gets a layer of this map.</p>
+	 * 
+	 * @param l The layer.
+	 * @return The {@link TileLayer}.
+	 */
+	public TileLayer getLayer(int l) {
+		requireTiles();
+		return this.layers[l];
 	}
 
 	/**
@@ -273,10 +1027,92 @@ public class TileMap {
 	 * 
 	 * @return A list of entities this map contains.
 	 */
-	public List<Entity> getEntityList() {
+	public EntityList getEntityList() {
 		return this.entityList;
 	}
 
+	/**
+	 * <p>Places this map within a {@link World}.</p>
+	 * 
+	 * @param world The world.
+	 * @param worldX The x offset of this map in world tiles.
+	 * @param worldY The y offset of this map in world tiles.
+	 */
+	void setWorld(World world, int worldX, int worldY) {
+		this.world = world;
+		this.worldX = worldX;
+		this.worldY = worldY;
+	}
+
+	/**
+	 * <p>Gets the {@link World} this map is part of.</p>
+	 * 
+	 * @return The world, or {@code null} if the map has not been placed in one.
+	 */
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * <p>Gets the x offset of this map within its {@link World}.</p>
+	 * 
+	 * @return The x offset in world tiles.
+	 */
+	public int getWorldX() {
+		return this.worldX;
+	}
+
+	/**
+	 * <p>Gets the y offset of this map within its {@link World}.</p>
+	 * 
+	 * @return The y offset in world tiles.
+	 */
+	public int getWorldY() {
+		return this.worldY;
+	}
+
+	/**
+	 * <p>Gets the grid of the tiles held by the entities of this map.</p>
+	 * 
+	 * @return The {@link OccupancyGrid}.
+	 */
+	public OccupancyGrid getOccupancy() {
+		requireTiles();
+		return this.occupancy;
+	}
+
+	/**
+	 * <p>Gets the cache of the paths found on this map, it is created the
+	 * first time it is used.</p>
+	 * 
+	 * @return The {@link PathCache}.
+	 */
+	public PathCache getPathCache() {
+		if(pathCache == null)
+			pathCache = new PathCache(PathCache.DEFAULT_CAPACITY);
+		return this.pathCache;
+	}
+
+	/**
+	 * <p>Gets the tile version of this map, it goes up whenever setting a tile
+	 * changes the flags of a cell, so anything worked out from the flags such
+	 * as a cached {@link Path} can tell when it is out of date.</p>
+	 * 
+	 * @return The tile version.
+	 */
+	public int getTileVersion() {
+		return this.tileVersion;
+	}
+
+	/**
+	 * <p>Gets the order the entities of this map are drawn in.</p>
+	 * 
+	 * @return The {@link EntityRenderOrder}.
+	 */
+	public EntityRenderOrder getRenderOrder() {
+		return this.renderOrder;
+	}
+
 	/**
 	 * <p>Gets the {@link TileSet} this map is using to render the
 	 * tiles.</p>
@@ -292,12 +1128,69 @@ public class TileMap {
 		return name + "(" + width + "," + height + ")";
 	}
 	
+	/**
+	 * <p>A {@code MapConnection} is a map joined onto an edge of another map, the
+	 * offset of the connected map is worked out when the maps are linked.</p>
+	 * 
+	 * <p>The {@code offset} moves the connected map along the edge it is joined to,
+	 * in tiles, for north and south this is along the x axis and for east and west
+	 * it is along the y axis.</p>
+	 */
 	public static final class MapConnection {
 		public final TileMap map;
+		public final EntityDirection direction;
 		public final int offset;
-		public MapConnection(TileMap map, int offset) {
+		/** <p>The position of the connected map in tiles, relative to the map it is connected to.</p> */
+		public final int tileX, tileY;
+		/** <p>The position of the connected map in pixels, relative to the map it is connected to.</p> */
+		public final float pixelX, pixelY;
+
+		/**
+		 * <p>Constructor for a new {@code MapConnection}.</p>
+		 * 
+		 * @param from The map the connection belongs to.
+		 * @param map The connected map.
+		 * @param direction The edge of {@code from} that the map is connected to.
+		 * @param offset The offset along the edge in tiles.
+		 */
+		public MapConnection(TileMap from, TileMap map, EntityDirection direction, int offset) {
 			this.map = map;
+			this.direction = direction;
 			this.offset = offset;
+			switch(direction) {
+			case DIRECTION_DOWN:
+				tileX = offset;
+				tileY = -map.getHeight();
+				break;
+			case DIRECTION_UP:
+				tileX = offset;
+				tileY = from.getHeight();
+				break;
+			case DIRECTION_LEFT:
+				tileX = -map.getWidth();
+				tileY = offset;
+				break;
+			default:
+				tileX = from.getWidth();
+				tileY = offset;
+				break;
+			}
+			this.pixelX = tileX*map.getTileset().getWidth();
+			this.pixelY = tileY*map.getTileset().getHeight();
+		}
+
+		/**
+		 * <p>Gets whether any of the connected map is within the view.</p>
+		 * 
+		 * @param offsetX The x offset of the map the connection belongs to.
+		 * @param offsetY The y offset of the map the connection belongs to.
+		 * @param view The visible area in world coordinates.
+		 * @return Whether the connected map is visible.
+		 */
+		public boolean isVisible(float offsetX, float offsetY, Rectangle view) {
+			float x = pixelX+offsetX, y = pixelY+offsetY;
+			return x < view.x+view.width && x+map.getFullWidth() > view.x
+					&& y < view.y+view.height && y+map.getFullHeight() > view.y;
 		}
 	}
 
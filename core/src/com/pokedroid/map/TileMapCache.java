@@ -0,0 +1,371 @@
+package com.pokedroid.map;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.pokedroid.util.RenderStats;
+
+/**
+ * <p>A {@code TileMapCache} holds the geometry of every layer of a {@link TileMap}
+ * compiled into a {@link SpriteCache}, the layers are split into chunks of
+ * {@link TileMapCache#CHUNK_SIZE} tiles so that only the chunks within the view
+ * are drawn.</p>
+ *
+ * <p>As the tiles of a map do not change once loaded the geometry only needs to be
+ * built once, when the map is entered, instead of every frame.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class TileMapCache implements Disposable {
+	public static final int CHUNK_SIZE = TileLayer.CHUNK_SIZE;
+
+	private static boolean enabled;
+	private static final Array<TileMap> releasedMaps = new Array<TileMap>();
+
+	private final TileMap map;
+	private final Matrix4 transform;
+	private SpriteCache cache;
+	private int chunksX, chunksY;
+	private int[][] chunkIds, chunkCapacity;
+	private AnimatedChunk[][] animatedChunks;
+
+	/**
+	 * <p>Constructor for a new {@code TileMapCache}, this compiles every layer
+	 * of the map.</p>
+	 *
+	 * @param map The map to compile.
+	 */
+	public TileMapCache(TileMap map) {
+		this.map = map;
+		this.transform = new Matrix4();
+		compile();
+	}
+
+	/**
+	 * <p>Compiles every chunk of every layer into a new {@link SpriteCache}.</p>
+	 *
+	 * <p>Animated tiles are left out of the geometry of their chunk, instead a
+	 * cache is compiled for each frame of each animation within the chunk so
+	 * that animating only changes which cache is drawn.</p>
+	 */
+	private void compile() {
+		if(cache != null)
+			cache.dispose();
+		TileSet tileset = map.getTileset();
+		TileLayer first = map.getLayer(0);
+		this.chunksX = first.getChunksX();
+		this.chunksY = first.getChunksY();
+		this.chunkIds = new int[map.getLayerCount()][chunksX*chunksY];
+		this.chunkCapacity = new int[map.getLayerCount()][chunksX*chunksY];
+		this.animatedChunks = new AnimatedChunk[map.getLayerCount()][chunksX*chunksY];
+		int[] animCounts = new int[tileset.getAnimationCount()];
+		int count = 0;
+		for(int l = 0; l < map.getLayerCount(); l++) {
+			for(int cy = 0; cy < chunksY; cy++) {
+				for(int cx = 0; cx < chunksX; cx++) {
+					int c = cx + (cy * chunksX);
+					chunkCapacity[l][c] = countChunk(l, cx, cy, animCounts);
+					count += chunkCapacity[l][c];
+					int types = 0;
+					for(int t = 0; t < animCounts.length; t++) {
+						if(animCounts[t] == 0) continue;
+						count += animCounts[t]*tileset.getAnimation(t).getFrameCount();
+						types++;
+					}
+					if(types > 0)
+						animatedChunks[l][c] = new AnimatedChunk(animCounts, types);
+				}
+			}
+		}
+		this.cache = new SpriteCache(Math.max(1, count), false);
+		for(int l = 0; l < map.getLayerCount(); l++) {
+			TileLayer layer = map.getLayer(l);
+			for(int cy = 0; cy < chunksY; cy++) {
+				for(int cx = 0; cx < chunksX; cx++) {
+					int c = cx + (cy * chunksX);
+					if(chunkCapacity[l][c] == 0) {
+						chunkIds[l][c] = -1;
+					} else {
+						cache.beginCache();
+						addChunk(l, cx, cy);
+						chunkIds[l][c] = cache.endCache();
+					}
+					AnimatedChunk anim = animatedChunks[l][c];
+					if(anim != null) {
+						for(int t = 0; t < anim.types.length; t++) {
+							TileAnimation animation = tileset.getAnimation(anim.types[t]);
+							anim.ids[t] = new int[animation.getFrameCount()];
+							for(int f = 0; f < animation.getFrameCount(); f++) {
+								cache.beginCache();
+								addAnimatedChunk(l, cx, cy, anim.types[t], animation.getFrame(f));
+								anim.ids[t][f] = cache.endCache();
+							}
+						}
+					}
+					layer.clearDirty(cx, cy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Counts the tiles in a chunk that are not hidden or animated, and the
+	 * placements of each animation.</p>
+	 *
+	 * @param l The layer.
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @param animCounts The array to count the placements of each animation into.
+	 * @return The amount of tiles that are not hidden or animated.
+	 */
+	private int countChunk(int l, int cx, int cy, int[] animCounts) {
+		Arrays.fill(animCounts, 0);
+		TileStorage chunk = map.getLayer(l).getChunk(cx, cy);
+		if(chunk == null)
+			return 0;
+		TileSet tileset = map.getTileset();
+		int baseX = cx*CHUNK_SIZE, baseY = cy*CHUNK_SIZE;
+		int count = 0;
+		for(int i = 0; i < chunk.size(); i++) {
+			if(isHidden(l, baseX, baseY, i))
+				continue;
+			if(tileset.isAnimated(chunk.get(i))) animCounts[tileset.getAnimationIndex(chunk.get(i))]++;
+			else count++;
+		}
+		return count;
+	}
+
+	/**
+	 * <p>Gets whether a tile within a chunk is hidden, taking care of the tiles
+	 * of a chunk at the edge of the map that are past the edge.</p>
+	 *
+	 * @param l The layer.
+	 * @param baseX The x position of the chunk in tiles.
+	 * @param baseY The y position of the chunk in tiles.
+	 * @param i The index of the tile within the chunk.
+	 * @return Whether the tile is hidden.
+	 */
+	private boolean isHidden(int l, int baseX, int baseY, int i) {
+		int x = baseX+(i & TileLayer.CHUNK_MASK), y = baseY+(i >> TileLayer.CHUNK_SHIFT);
+		return x >= map.getWidth() || y >= map.getHeight() || map.isHidden(l, x, y);
+	}
+
+	/**
+	 * <p>Adds the tiles of a single chunk that are not hidden or animated to
+	 * the cache currently being defined.</p>
+	 *
+	 * @param l The layer.
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 */
+	private void addChunk(int l, int cx, int cy) {
+		TileSet tileset = map.getTileset();
+		TileStorage chunk = map.getLayer(l).getChunk(cx, cy);
+		if(chunk == null)
+			return;
+		int baseX = cx*CHUNK_SIZE, baseY = cy*CHUNK_SIZE;
+		for(int i = 0; i < chunk.size(); i++) {
+			if(isHidden(l, baseX, baseY, i) || tileset.isAnimated(chunk.get(i)))
+				continue;
+			cache.add(tileset.getStaticTile(chunk.get(i)), (baseX+(i & TileLayer.CHUNK_MASK))*tileset.getWidth(),
+					(baseY+(i >> TileLayer.CHUNK_SHIFT))*tileset.getHeight());
+		}
+	}
+
+	/**
+	 * <p>Adds a single frame of the placements of an animation within a chunk
+	 * to the cache currently being defined.</p>
+	 *
+	 * @param l The layer.
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @param type The index of the animation.
+	 * @param frame The tile id of the frame.
+	 */
+	private void addAnimatedChunk(int l, int cx, int cy, int type, int frame) {
+		TileSet tileset = map.getTileset();
+		TileStorage chunk = map.getLayer(l).getChunk(cx, cy);
+		int baseX = cx*CHUNK_SIZE, baseY = cy*CHUNK_SIZE;
+		for(int i = 0; i < chunk.size(); i++) {
+			if(isHidden(l, baseX, baseY, i) || tileset.getAnimationIndex(chunk.get(i)) != type)
+				continue;
+			cache.add(tileset.getStaticTile(frame), (baseX+(i & TileLayer.CHUNK_MASK))*tileset.getWidth(),
+					(baseY+(i >> TileLayer.CHUNK_SHIFT))*tileset.getHeight());
+		}
+	}
+
+	/**
+	 * <p>Rebuilds a dirty chunk, if the chunk now holds more tiles than it
+	 * was first compiled with or its animated tiles have changed then the
+	 * whole cache is compiled again.</p>
+	 *
+	 * @param l The layer.
+	 * @param cx The chunk column.
+	 * @param cy The chunk row.
+	 * @param animCounts An array to count the placements of each animation into.
+	 * @return Whether the whole cache had to be compiled again.
+	 */
+	private boolean recompileChunk(int l, int cx, int cy, int[] animCounts) {
+		TileLayer layer = map.getLayer(l);
+		int c = cx + (cy * chunksX);
+		int count = countChunk(l, cx, cy, animCounts);
+		boolean animated = false;
+		for(int t = 0; t < animCounts.length && !animated; t++)
+			animated = animCounts[t] > 0;
+		if(count > chunkCapacity[l][c] || animated || animatedChunks[l][c] != null) {
+			compile();
+			return true;
+		}
+		if(chunkIds[l][c] != -1) {
+			cache.beginCache(chunkIds[l][c]);
+			addChunk(l, cx, cy);
+			cache.endCache();
+		}
+		layer.clearDirty(cx, cy);
+		return false;
+	}
+
+	/**
+	 * <p>Renders the chunks of a layer that are within the view, any visible
+	 * chunk that has changed is rebuilt first.</p>
+	 *
+	 * @param projection The projection matrix of the camera.
+	 * @param l The layer to render.
+	 * @param offsetX The x offset.
+	 * @param offsetY The y offset.
+	 * @param view The visible area in world coordinates.
+	 * @param stats The stats to count the tiles drawn into, may be {@code null}.
+	 */
+	public void render(Matrix4 projection, int l, float offsetX, float offsetY, Rectangle view, RenderStats stats) {
+		TileSet tileset = map.getTileset();
+		float chunkWidth = CHUNK_SIZE*tileset.getWidth();
+		float chunkHeight = CHUNK_SIZE*tileset.getHeight();
+		int startX = Math.max(0, (int)Math.floor((view.x-offsetX)/chunkWidth));
+		int startY = Math.max(0, (int)Math.floor((view.y-offsetY)/chunkHeight));
+		int endX = Math.min(chunksX-1, (int)Math.floor((view.x+view.width-offsetX)/chunkWidth));
+		int endY = Math.min(chunksY-1, (int)Math.floor((view.y+view.height-offsetY)/chunkHeight));
+		if(startX > endX || startY > endY)
+			return;
+		TileLayer layer = map.getLayer(l);
+		int[] animCounts = null;
+		for(int cy = startY; cy <= endY; cy++) {
+			for(int cx = startX; cx <= endX; cx++) {
+				if(!layer.isDirty(cx, cy))
+					continue;
+				if(animCounts == null)
+					animCounts = new int[tileset.getAnimationCount()];
+				if(recompileChunk(l, cx, cy, animCounts))
+					break;
+			}
+		}
+		cache.setProjectionMatrix(projection);
+		cache.setTransformMatrix(transform.setToTranslation(offsetX, offsetY, 0f));
+		// SpriteCache does not manage blending and a batch ending turns it off.
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		cache.begin();
+		int[] ids = chunkIds[l];
+		AnimatedChunk[] anims = animatedChunks[l];
+		int submitted = 0;
+		for(int cy = startY; cy <= endY; cy++) {
+			for(int cx = startX; cx <= endX; cx++) {
+				int c = cx + (cy * chunksX);
+				if(ids[c] != -1)
+					cache.draw(ids[c]);
+				AnimatedChunk anim = anims[c];
+				if(anim != null) {
+					for(int t = 0; t < anim.types.length; t++)
+						cache.draw(anim.ids[t][tileset.getAnimationFrame(anim.types[t])]);
+				}
+				submitted += layer.getChunkCount(cx, cy);
+			}
+		}
+		cache.end();
+		if(stats != null) {
+			stats.addRenderCalls(cache.renderCalls);
+			int visible = 0;
+			if(stats.isProfiling()) {
+				int tw = tileset.getWidth(), th = tileset.getHeight();
+				visible = map.countTiles(l, (int)Math.floor((view.x-offsetX)/tw),
+						(int)Math.floor((view.y-offsetY)/th), (int)Math.floor((view.x+view.width-offsetX)/tw),
+						(int)Math.floor((view.y+view.height-offsetY)/th));
+			}
+			stats.addTiles(submitted, visible);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		if(cache != null)
+			cache.dispose();
+		cache = null;
+	}
+
+	/**
+	 * <p>Sets whether maps should compile a {@code TileMapCache} when they
+	 * are entered.</p>
+	 *
+	 * @param enabled Whether cached rendering is enabled.
+	 */
+	public static void setEnabled(boolean enabled) {
+		TileMapCache.enabled = enabled;
+	}
+
+	/**
+	 * <p>Gets whether cached rendering is enabled.</p>
+	 *
+	 * @return Whether cached rendering is enabled.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * <p>Queues a map whose cache is no longer used, the cache is only freed
+	 * on the next {@link TileMapCache#freeReleased()} so that a map that is
+	 * exited and then entered again straight away keeps its geometry.</p>
+	 *
+	 * @param map The map that released its cache.
+	 */
+	static void release(TileMap map) {
+		if(!releasedMaps.contains(map, true))
+			releasedMaps.add(map);
+	}
+
+	/**
+	 * <p>Frees the caches of the released maps that have not been used
+	 * again since they were released.</p>
+	 */
+	static void freeReleased() {
+		for(int i = 0; i < releasedMaps.size; i++)
+			releasedMaps.get(i).freeCacheIfUnused();
+		releasedMaps.clear();
+	}
+
+	/**
+	 * <p>The animations placed within a chunk, with a cache id for every frame
+	 * of each animation.</p>
+	 */
+	private static final class AnimatedChunk {
+		final int[] types;
+		final int[][] ids;
+
+		AnimatedChunk(int[] animCounts, int typeCount) {
+			this.types = new int[typeCount];
+			this.ids = new int[typeCount][];
+			int i = 0;
+			for(int t = 0; t < animCounts.length; t++)
+				if(animCounts[t] > 0) types[i++] = t;
+		}
+	}
+
+}
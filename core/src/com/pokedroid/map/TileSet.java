@@ -1,9 +1,13 @@
 package com.pokedroid.map;
 
+import java.util.Arrays;
 import java.util.Map;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.JsonValue;
 
@@ -12,51 +16,72 @@ import com.badlogic.gdx.utils.JsonValue;
  * to form a tileset. The reason there are small images is due to the fact that the
  * engine on a mobile device cannot handle images larger than 2048x2048.</p>
  * 
+ * <p>When the tileset is loaded the pixels of every tile are checked to find
+ * which tiles are fully transparent and which are fully opaque, this is used by
+ * the {@link TileMap} to skip drawing tiles that cannot be seen.</p>
+ * 
  * @author PoketronHacker
  * @version v1.0
  * @since v1.0
  *
  */
 public class TileSet implements Disposable {
-	private static final int SOLID_FLAG = 0x1, ENCOUNTER_FLAG = 0x2,
-			LEDGE_FLAG_DOWN = 0x4, LEDGE_FLAG_LEFT = 0x8, LEDGE_FLAG_RIGHT = 0x16;
+	public static final int SOLID_FLAG = 0x1, ENCOUNTER_FLAG = 0x2,
+			LEDGE_FLAG_DOWN = 0x4, LEDGE_FLAG_LEFT = 0x8, LEDGE_FLAG_RIGHT = 0x10;
+	/** <p>Every flag a tile can have, the flags of a tile fit within a byte.</p> */
+	public static final int FLAG_MASK = SOLID_FLAG | ENCOUNTER_FLAG | LEDGE_FLAG_DOWN | LEDGE_FLAG_LEFT
+			| LEDGE_FLAG_RIGHT;
+	public static final byte OPACITY_TRANSPARENT = 0, OPACITY_PARTIAL = 1, OPACITY_OPAQUE = 2;
 	
 	private String name;
 	private Texture[] textures;
+	private TextureRegion[] images;
 	private TextureRegion[] tiles;
 	private int[] tileData;
+	private byte[] opacity;
 	private int tileWidth, tileHeight;
+	private TileAnimation[] animations;
+	private int[] animationIndex, frameTable, currentFrames;
+	private double animationTime;
 	
 	/**
 	 * <p>Constructor for a new {@code TileSet}.</p>
 	 * 
 	 * @param set The tileset.
-	 * @param textureMap A texturemap of textures for the tileset to use.
+	 * @param textureMap A map of texture regions for the tileset to use, the
+	 * regions are owned by the {@code Story} and are not disposed with the tileset.
+	 * @param pixmapMap A map of the images the regions were made from, these are used
+	 * to find the opacity of each tile, may be {@code null} in which case every
+	 * tile is treated as partially transparent.
 	 */
-	public TileSet(JsonValue set, Map<String, Texture> textureMap) {
+	public TileSet(JsonValue set, Map<String, TextureRegion> textureMap, Map<String, Pixmap> pixmapMap) {
 		this.name = set.getString("name");
 		this.tileWidth = set.getInt("width");
 		this.tileHeight = set.getInt("height");
 		JsonValue img = set.get("images");
 		JsonValue data = set.get("data");
-		textures = new Texture[img.size];
+		images = new TextureRegion[img.size];
 		for(int i = 0; i < img.size; i++) {
-			textures[i] = textureMap.get(img.getString(i));
+			images[i] = textureMap.get(img.getString(i));
 		}
 		int size = 0;
-		for(int i = 0; i < textures.length; i++) {
-			Texture t = textures[i];
-			int cols = t.getWidth()/tileWidth;
-			int rows = t.getHeight()/tileHeight;
+		for(int i = 0; i < images.length; i++) {
+			TextureRegion t = images[i];
+			int cols = t.getRegionWidth()/tileWidth;
+			int rows = t.getRegionHeight()/tileHeight;
 			size += (cols*rows);
 		}
 		tiles = new TextureRegion[size];
 		tileData = new int[size];
+		opacity = new byte[size];
 		int index = 0;
-		for(int i = 0; i < textures.length; i++) {
-			Texture t = textures[i];
-			int cols = t.getWidth()/tileWidth;
-			int rows = t.getHeight()/tileHeight;
+		for(int i = 0; i < images.length; i++) {
+			TextureRegion t = images[i];
+			int cols = t.getRegionWidth()/tileWidth;
+			int rows = t.getRegionHeight()/tileHeight;
+			Pixmap p = (pixmapMap == null) ? null : pixmapMap.get(img.getString(i));
+			if(p != null) analyseOpacity(p, index, cols, rows);
+			else Arrays.fill(opacity, index, index+(cols*rows), OPACITY_PARTIAL);
 			for(int y = 0; y < rows; y++) {
 				for(int x = 0; x < cols; x++) {
 					if(data.has(String.valueOf(index))) {
@@ -66,6 +91,7 @@ public class TileSet implements Disposable {
 				}
 			}
 		}
+		loadAnimations(set);
 	}
 	
 	/**
@@ -80,23 +106,23 @@ public class TileSet implements Disposable {
 		JsonValue img = set.get("images");
 		JsonValue data = set.get("data");
 		textures = new Texture[img.size];
-		for(int i = 0; i < img.size; i++) {
-			textures[i] = new Texture(img.getString(i));
-		}
+		Pixmap[] pixmaps = new Pixmap[img.size];
 		int size = 0;
-		for(int i = 0; i < textures.length; i++) {
-			Texture t = textures[i];
-			int cols = t.getWidth()/tileWidth;
-			int rows = t.getHeight()/tileHeight;
-			size += (cols*rows);
+		for(int i = 0; i < img.size; i++) {
+			pixmaps[i] = new Pixmap(Gdx.files.internal(img.getString(i)));
+			size += (pixmaps[i].getWidth()/tileWidth)*(pixmaps[i].getHeight()/tileHeight);
 		}
 		tiles = new TextureRegion[size];
 		tileData = new int[size];
+		opacity = new byte[size];
 		int index = 0;
 		for(int i = 0; i < textures.length; i++) {
-			Texture t = textures[i];
-			int cols = t.getWidth()/tileWidth;
-			int rows = t.getHeight()/tileHeight;
+			int cols = pixmaps[i].getWidth()/tileWidth;
+			int rows = pixmaps[i].getHeight()/tileHeight;
+			analyseOpacity(pixmaps[i], index, cols, rows);
+			// Uploading frees the pixmap, the texture is read from the file again if the context is lost.
+			Texture t = new Texture(new FileTextureData(Gdx.files.internal(img.getString(i)), pixmaps[i], null, false));
+			textures[i] = t;
 			for(int y = 0; y < rows; y++) {
 				for(int x = 0; x < cols; x++) {
 					if(data.has(String.valueOf(index))) {
@@ -106,15 +132,109 @@ public class TileSet implements Disposable {
 				}
 			}
 		}
+		loadAnimations(set);
 	}
 	
+	/**
+	 * <p>Finds the opacity of each tile within an image by checking the alpha
+	 * of its pixels.</p>
+	 * 
+	 * @param p The image.
+	 * @param first The index of the first tile within the image.
+	 * @param cols The amount of tile columns in the image.
+	 * @param rows The amount of tile rows in the image.
+	 */
+	private void analyseOpacity(Pixmap p, int first, int cols, int rows) {
+		for(int y = 0; y < rows; y++) {
+			for(int x = 0; x < cols; x++) {
+				boolean opaque = true, transparent = true;
+				for(int py = y*tileHeight; py < (y+1)*tileHeight && (opaque || transparent); py++) {
+					for(int px = x*tileWidth; px < (x+1)*tileWidth; px++) {
+						int alpha = p.getPixel(px, py) & 0xff;
+						if(alpha != 0xff) opaque = false;
+						if(alpha != 0) transparent = false;
+					}
+				}
+				opacity[first + x + (y * cols)] = opaque ? OPACITY_OPAQUE :
+					transparent ? OPACITY_TRANSPARENT : OPACITY_PARTIAL;
+			}
+		}
+	}
+
+	/**
+	 * <p>Loads the animated tiles of the tileset.</p>
+	 * 
+	 * @param set The tileset.
+	 */
+	private void loadAnimations(JsonValue set) {
+		frameTable = new int[tiles.length];
+		animationIndex = new int[tiles.length];
+		for(int i = 0; i < tiles.length; i++) {
+			frameTable[i] = i;
+			animationIndex[i] = -1;
+		}
+		JsonValue anims = set.get("animations");
+		animations = new TileAnimation[(anims == null) ? 0 : anims.size];
+		currentFrames = new int[animations.length];
+		for(int i = 0; i < animations.length; i++) {
+			JsonValue anim = anims.get(i);
+			animations[i] = new TileAnimation(Integer.parseInt(anim.name), anim);
+			if(animations[i].getTile() < 0 || animations[i].getTile() >= tiles.length)
+				throw new MapInitialisationException("Animated tile " + anim.name + " is not in " + name);
+			for(int f = 0; f < animations[i].getFrameCount(); f++)
+				if(animations[i].getFrame(f) < 0 || animations[i].getFrame(f) >= tiles.length)
+					throw new MapInitialisationException("Frame " + f + " of animated tile " + anim.name
+							+ " is not in " + name);
+			animationIndex[animations[i].getTile()] = i;
+			frameTable[animations[i].getTile()] = animations[i].getFrame(0);
+			byte o = opacity[animations[i].getFrame(0)];
+			for(int f = 1; f < animations[i].getFrameCount(); f++)
+				if(opacity[animations[i].getFrame(f)] != o)
+					o = OPACITY_PARTIAL;
+			opacity[animations[i].getTile()] = o;
+		}
+		animationTime = 0;
+	}
+
+	/**
+	 * <p>Updates the animated tiles to the frame they show at a time, the cost
+	 * of this only depends on the amount of animated tiles in the tileset and not
+	 * how many times they are placed on a map.</p>
+	 * 
+	 * @param time The time of the {@link com.pokedroid.util.AnimationClock}.
+	 */
+	public void updateAnimations(double time) {
+		if(time == animationTime)
+			return;
+		animationTime = time;
+		for(int i = 0; i < animations.length; i++) {
+			int frame = animations[i].getFrameIndex(time);
+			currentFrames[i] = frame;
+			frameTable[animations[i].getTile()] = animations[i].getFrame(frame);
+		}
+	}
+
 	@Override
 	public void dispose() {
-		for(Texture t : textures)
-			t.dispose();
+		if(textures != null)
+			for(Texture t : textures)
+				t.dispose();
 		textures = null;
 	}
 	
+	/**
+	 * <p>Gets the flags of a tile with the index of i, a tile that is not
+	 * within the tileset is solid.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return The flags of the tile.
+	 */
+	public int getFlags(int i) {
+		if(i < 0 || i >= tileData.length)
+			return SOLID_FLAG;
+		return this.tileData[i] & FLAG_MASK;
+	}
+
 	/**
 	 * <p>Gets whether a tile with the index of i is solid.</p>
 	 * 
@@ -180,15 +300,120 @@ public class TileSet implements Disposable {
 	}
 	
 	/**
-	 * <p>Gets a tile with the index of i.</p>
+	 * <p>Gets the opacity of a tile with the index of i, an animated tile
+	 * is only opaque or transparent if every one of its frames is.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return The opacity, one of {@link TileSet#OPACITY_TRANSPARENT},
+	 * {@link TileSet#OPACITY_PARTIAL} or {@link TileSet#OPACITY_OPAQUE}.
+	 */
+	public byte getOpacity(int i) {
+		if(i < 0 || i >= opacity.length)
+			return OPACITY_TRANSPARENT;
+		return this.opacity[i];
+	}
+
+	/**
+	 * <p>Gets whether a tile with the index of i covers everything
+	 * drawn beneath it.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return Whether the tile is fully opaque.
+	 */
+	public boolean isOpaque(int i) {
+		return getOpacity(i) == OPACITY_OPAQUE;
+	}
+
+	/**
+	 * <p>Gets whether a tile with the index of i has no visible pixels, such
+	 * a tile is not drawn but still keeps its flags.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return Whether the tile is fully transparent.
+	 */
+	public boolean isTransparent(int i) {
+		return getOpacity(i) == OPACITY_TRANSPARENT;
+	}
+
+	/**
+	 * <p>Gets a tile with the index of i, if the tile is animated then
+	 * the current frame is returned.</p>
 	 * 
 	 * @param i The tile index.
 	 * @return A {@code TextureRegion} of that index.
 	 */
 	public TextureRegion getTile(int i) {
+		return this.tiles[frameTable[i]];
+	}
+
+	/**
+	 * <p>Gets a tile with the index of i, ignoring any animation.</p>
+	 * 
+	 * @param i The tile index.
+	 * @return A {@code TextureRegion} of that index.
+	 */
+	public TextureRegion getStaticTile(int i) {
 		return this.tiles[i];
 	}
+
+	/**
+	 * <p>Gets whether a tile with the index of i is animated.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return Whether the tile is animated.
+	 */
+	public boolean isAnimated(int i) {
+		return i >= 0 && i < animationIndex.length && animationIndex[i] != -1;
+	}
+
+	/**
+	 * <p>Gets the index of the {@link TileAnimation} a tile uses.</p>
+	 * 
+	 * @param i The index of the tile.
+	 * @return The index of the animation, or {@code -1} if the tile is not animated.
+	 */
+	public int getAnimationIndex(int i) {
+		return this.animationIndex[i];
+	}
+
+	/**
+	 * <p>Gets an animation of this tileset.</p>
+	 * 
+	 * @param index The index of the animation.
+	 * @return The {@link TileAnimation}.
+	 */
+	public TileAnimation getAnimation(int index) {
+		return this.animations[index];
+	}
+
+	/**
+	 * <p>Gets the amount of animated tiles in this tileset.</p>
+	 * 
+	 * @return The amount of animations.
+	 */
+	public int getAnimationCount() {
+		return this.animations.length;
+	}
+
+	/**
+	 * <p>Gets the frame an animation is currently showing.</p>
+	 * 
+	 * @param index The index of the animation.
+	 * @return The index of the current frame.
+	 */
+	public int getAnimationFrame(int index) {
+		return this.currentFrames[index];
+	}
 	
+	/**
+	 * <p>Gets the amount of tiles in this tileset.</p>
+	 * 
+	 * @return The amount of tiles.
+	 */
+	public int getTileCount() {
+		return this.tiles.length;
+	}
+
 	/**
 	 * <p>Gets the width of an individual tile.</p>
 	 * 
@@ -0,0 +1,320 @@
+package com.pokedroid.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pokedroid.entity.Entity;
+import com.pokedroid.map.TileMap.MapConnection;
+
+/**
+ * <p>A {@code World} places every {@link TileMap} that can be reached through the
+ * connections of a map into one shared tile coordinate space, each map is given
+ * an offset in world tiles from the map the world was built from.</p>
+ *
+ * <p>The world is split into square cells of {@link World#CELL_SIZE} tiles that
+ * each hold the maps overlapping them, so finding the map that owns a world tile
+ * only checks the one or two maps of a single cell.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class World {
+	public static final int CELL_SHIFT = TileLayer.CHUNK_SHIFT, CELL_SIZE = 1 << CELL_SHIFT;
+
+	private final TileMap[] maps;
+	private final int[] offsetX, offsetY;
+	private int minX, minY, width, height, cellsX, cellsY;
+	private int[][] cells;
+
+	/**
+	 * <p>Constructor for a new {@code World}, this finds every map connected to
+	 * the root map, directly or through other maps. A connection joins both maps
+	 * whichever of them it is written in, so a map is found even if only the other
+	 * map links to it. Maps that are already part of another world are left out.</p>
+	 *
+	 * @param root The map at the origin of the world.
+	 * @param allMaps Every map of the story, used to find the connections leading into
+	 * a map.
+	 * @throws MapInitialisationException Thrown if the connections place a map at two
+	 * different positions.
+	 */
+	public World(TileMap root, Collection<TileMap> allMaps) {
+		if(root.getWorld() != null)
+			throw new IllegalArgumentException(root + " is already part of a world");
+		Map<TileMap, List<TileMap>> incoming = new HashMap<TileMap, List<TileMap>>();
+		for(TileMap m : allMaps) {
+			for(MapConnection c : m.getConnections()) {
+				if(c == null)
+					continue;
+				List<TileMap> from = incoming.get(c.map);
+				if(from == null)
+					incoming.put(c.map, from = new ArrayList<TileMap>());
+				from.add(m);
+			}
+		}
+		List<TileMap> found = new ArrayList<TileMap>();
+		List<int[]> offsets = new ArrayList<int[]>();
+		Map<TileMap, Integer> indices = new HashMap<TileMap, Integer>();
+		found.add(root);
+		offsets.add(new int[]{0, 0});
+		indices.put(root, 0);
+		for(int i = 0; i < found.size(); i++) {
+			TileMap m = found.get(i);
+			int[] offset = offsets.get(i);
+			for(MapConnection c : m.getConnections()) {
+				if(c != null)
+					place(m, c.map, offset[0]+c.tileX, offset[1]+c.tileY, found, offsets, indices);
+			}
+			List<TileMap> from = incoming.get(m);
+			if(from == null)
+				continue;
+			for(TileMap f : from) {
+				for(MapConnection c : f.getConnections()) {
+					if(c != null && c.map == m)
+						place(m, f, offset[0]-c.tileX, offset[1]-c.tileY, found, offsets, indices);
+				}
+			}
+		}
+		this.maps = found.toArray(new TileMap[found.size()]);
+		this.offsetX = new int[maps.length];
+		this.offsetY = new int[maps.length];
+		for(int i = 0; i < maps.length; i++) {
+			offsetX[i] = offsets.get(i)[0];
+			offsetY[i] = offsets.get(i)[1];
+			maps[i].setWorld(this, offsetX[i], offsetY[i]);
+		}
+		buildCells();
+	}
+
+	/**
+	 * <p>Places a map found through a connection, a map already placed must be at
+	 * the same position.</p>
+	 *
+	 * @param from The map the connection was followed from.
+	 * @param map The map found.
+	 * @param x The x world tile the connection places the map at.
+	 * @param y The y world tile the connection places the map at.
+	 * @param found The maps placed so far.
+	 * @param offsets The offsets of the maps placed so far.
+	 * @param indices The index of each map placed so far.
+	 */
+	private static void place(TileMap from, TileMap map, int x, int y, List<TileMap> found,
+			List<int[]> offsets, Map<TileMap, Integer> indices) {
+		Integer index = indices.get(map);
+		if(index == null) {
+			if(map.getWorld() != null)
+				return;
+			indices.put(map, found.size());
+			found.add(map);
+			offsets.add(new int[]{x, y});
+		} else if(offsets.get(index)[0] != x || offsets.get(index)[1] != y) {
+			throw new MapInitialisationException("Connection between " + from + " and " + map
+					+ " places " + map + " at " + x + "," + y + " but it is already at "
+					+ offsets.get(index)[0] + "," + offsets.get(index)[1]);
+		}
+	}
+
+	/**
+	 * <p>Works out the bounds of the world and the maps that overlap each cell.</p>
+	 */
+	private void buildCells() {
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		minX = minY = Integer.MAX_VALUE;
+		for(int i = 0; i < maps.length; i++) {
+			minX = Math.min(minX, offsetX[i]);
+			minY = Math.min(minY, offsetY[i]);
+			maxX = Math.max(maxX, offsetX[i]+maps[i].getWidth());
+			maxY = Math.max(maxY, offsetY[i]+maps[i].getHeight());
+		}
+		width = maxX-minX;
+		height = maxY-minY;
+		cellsX = (width+CELL_SIZE-1) >> CELL_SHIFT;
+		cellsY = (height+CELL_SIZE-1) >> CELL_SHIFT;
+		cells = new int[cellsX*cellsY][];
+		for(int i = 0; i < maps.length; i++) {
+			int startX = (offsetX[i]-minX) >> CELL_SHIFT, startY = (offsetY[i]-minY) >> CELL_SHIFT;
+			int endX = (offsetX[i]-minX+maps[i].getWidth()-1) >> CELL_SHIFT;
+			int endY = (offsetY[i]-minY+maps[i].getHeight()-1) >> CELL_SHIFT;
+			for(int cy = startY; cy <= endY; cy++) {
+				for(int cx = startX; cx <= endX; cx++) {
+					int c = cx + (cy * cellsX);
+					int[] old = cells[c];
+					int[] cell = new int[(old == null) ? 1 : old.length+1];
+					if(old != null)
+						System.arraycopy(old, 0, cell, 0, old.length);
+					cell[cell.length-1] = i;
+					cells[c] = cell;
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Gets the index of the map that owns a world tile.</p>
+	 *
+	 * @param x The x world tile.
+	 * @param y The y world tile.
+	 * @return The index of the map, or {@code -1} if no map owns the tile.
+	 */
+	private int indexAt(int x, int y) {
+		int rx = x-minX, ry = y-minY;
+		if(rx < 0 || ry < 0 || rx >= width || ry >= height)
+			return -1;
+		int[] cell = cells[(rx >> CELL_SHIFT) + ((ry >> CELL_SHIFT) * cellsX)];
+		if(cell == null)
+			return -1;
+		for(int i = 0; i < cell.length; i++) {
+			int m = cell[i];
+			if(x >= offsetX[m] && y >= offsetY[m]
+					&& x < offsetX[m]+maps[m].getWidth() && y < offsetY[m]+maps[m].getHeight())
+				return m;
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>Gets the map that owns a world tile.</p>
+	 *
+	 * @param x The x world tile.
+	 * @param y The y world tile.
+	 * @return The map, or {@code null} if no map owns the tile.
+	 */
+	public TileMap getMapAt(int x, int y) {
+		int i = indexAt(x, y);
+		return (i == -1) ? null : maps[i];
+	}
+
+	/**
+	 * <p>Gets the tile of a layer at a world tile.</p>
+	 *
+	 * @param l The layer.
+	 * @param x The x world tile.
+	 * @param y The y world tile.
+	 * @return The tile, or {@code -1} if no map owns the tile.
+	 */
+	public int getTile(int l, int x, int y) {
+		int i = indexAt(x, y);
+		return (i == -1) ? -1 : maps[i].getTile(l, x-offsetX[i], y-offsetY[i]);
+	}
+
+	/**
+	 * <p>Gets the flags of the cell at a world tile.</p>
+	 *
+	 * @param x The x world tile.
+	 * @param y The y world tile.
+	 * @return The flags of the cell, a tile no map owns is solid.
+	 */
+	public int getCellFlags(int x, int y) {
+		int i = indexAt(x, y);
+		return (i == -1) ? TileSet.SOLID_FLAG : maps[i].getCellFlags(x-offsetX[i], y-offsetY[i]);
+	}
+
+	/**
+	 * <p>Checks whether an entity can move onto a world tile.</p>
+	 *
+	 * @param mover The entity that is moving, may be {@code null}.
+	 * @param x The x world tile.
+	 * @param y The y world tile.
+	 * @return Whether the entity can move there.
+	 */
+	public boolean canMove(Entity mover, int x, int y) {
+		int i = indexAt(x, y);
+		return i != -1 && maps[i].canMove(mover, x-offsetX[i], y-offsetY[i]);
+	}
+
+	/**
+	 * <p>Adds the maps that overlap a rectangle of world tiles to a list, each
+	 * map is only added once.</p>
+	 *
+	 * @param x The first x world tile.
+	 * @param y The first y world tile.
+	 * @param w The width of the rectangle in tiles.
+	 * @param h The height of the rectangle in tiles.
+	 * @param out The list to add the maps to.
+	 * @return The amount of maps added.
+	 */
+	public int query(int x, int y, int w, int h, List<TileMap> out) {
+		int startX = Math.max(0, (x-minX) >> CELL_SHIFT), startY = Math.max(0, (y-minY) >> CELL_SHIFT);
+		int endX = Math.min(cellsX-1, (x+w-1-minX) >> CELL_SHIFT);
+		int endY = Math.min(cellsY-1, (y+h-1-minY) >> CELL_SHIFT);
+		int count = 0;
+		for(int cy = startY; cy <= endY; cy++) {
+			for(int cx = startX; cx <= endX; cx++) {
+				int[] cell = cells[cx + (cy * cellsX)];
+				if(cell == null)
+					continue;
+				for(int i = 0; i < cell.length; i++) {
+					int m = cell[i];
+					if(offsetX[m] < x+w && offsetX[m]+maps[m].getWidth() > x
+							&& offsetY[m] < y+h && offsetY[m]+maps[m].getHeight() > y
+							&& !out.contains(maps[m])) {
+						out.add(maps[m]);
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * <p>Gets whether a map is part of this world.</p>
+	 *
+	 * @param map The map.
+	 * @return Whether the map is part of this world.
+	 */
+	public boolean contains(TileMap map) {
+		return map.getWorld() == this;
+	}
+
+	/**
+	 * <p>Gets the maps of this world, the map the world was built from is first.</p>
+	 *
+	 * @return The maps.
+	 */
+	public TileMap[] getMaps() {
+		return this.maps;
+	}
+
+	/**
+	 * <p>Gets the lowest x world tile of any map.</p>
+	 *
+	 * @return The lowest x world tile.
+	 */
+	public int getMinX() {
+		return this.minX;
+	}
+
+	/**
+	 * <p>Gets the lowest y world tile of any map.</p>
+	 *
+	 * @return The lowest y world tile.
+	 */
+	public int getMinY() {
+		return this.minY;
+	}
+
+	/**
+	 * <p>Gets the width of the bounds of every map in tiles.</p>
+	 *
+	 * @return The width in tiles.
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * <p>Gets the height of the bounds of every map in tiles.</p>
+	 *
+	 * @return The height in tiles.
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+}
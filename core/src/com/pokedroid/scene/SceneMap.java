@@ -4,12 +4,19 @@ import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.pokedroid.PokeDroid;
-import com.pokedroid.entity.Entity;
 import com.pokedroid.entity.EntityDirection;
+import com.pokedroid.entity.EntityList;
+import com.pokedroid.entity.EntityRenderOrder;
 import com.pokedroid.entity.Player;
+import com.pokedroid.map.MapPrefetcher;
 import com.pokedroid.map.TileMap;
+import com.pokedroid.map.TileMapCache;
 import com.pokedroid.story.Story;
+import com.pokedroid.util.AnimationClock;
+import com.pokedroid.util.RenderStats;
 
 /**
  * <p>This is the map scene, where the {@link TileMap}'s will be rendered and all
@@ -25,9 +32,14 @@ public class SceneMap implements Scene {
 	private PokeDroid game;
 	private SpriteBatch batch;
 	private Camera camera;
+	private Rectangle viewBounds;
 	private Player player;
+	private MapPrefetcher prefetcher;
 	private boolean up, down, left, right;
 	private Story story;
+	private RenderStats stats;
+	private StatsOverlay statsOverlay;
+	private boolean showStats;
 
 	@Override
 	public void create(PokeDroid game) {
@@ -36,45 +48,129 @@ public class SceneMap implements Scene {
 		this.game.clearColor.set(Color.BLACK);
 		this.player = new Player(game.getLoadedStory().getPlayerTexture(), game.getLoadedStory().getStartMap(),
 				game.getLoadedStory().getStartX(), game.getLoadedStory().getStartY());
+		this.prefetcher = new MapPrefetcher(game.getExecutor());
+		this.player.setPrefetcher(prefetcher);
 		this.camera = game.createCamera();
 		this.camera.position.setZero();
 		this.camera.update();
+		this.viewBounds = new Rectangle();
 		this.batch = new SpriteBatch();
 		this.batch.setProjectionMatrix(camera.combined);
+		this.stats = new RenderStats();
 		this.player.getMap().onEnter();
 	}
 
 	@Override
 	public void update(float timeDelta) {
 		if(this.story != game.getLoadedStory()) {
+			this.prefetcher.clear();
 			this.player.setSprite(game.getLoadedStory().getPlayerTexture());
 			this.player.setMap(game.getLoadedStory().getStartMap(),
 					game.getLoadedStory().getStartX(),
 					game.getLoadedStory().getStartY());
 			this.story = game.getLoadedStory();
 		}
-		for(Entity e : player.getMap().getEntityList()) {
-			e.update(timeDelta);
+		stats.recordFrameTime(timeDelta);
+		AnimationClock.update(timeDelta);
+		long start = TimeUtils.nanoTime();
+		EntityList entities = player.getMap().getEntityList();
+		entities.begin();
+		for(int i = 0; i < entities.size(); i++) {
+			entities.get(i).update(timeDelta);
 		}
+		entities.end();
+		stats.recordUpdate(entities.size(), TimeUtils.nanoTime()-start);
 		player.applyMapChange();
+		player.getMap().updateAnimations(AnimationClock.getTime());
 		camera.position.set(player.getX(), player.getY(), 0f);
 		camera.update();
 		batch.setProjectionMatrix(camera.combined);
+		viewBounds.set(camera.position.x-(camera.viewportWidth/2f), camera.position.y-(camera.viewportHeight/2f),
+				camera.viewportWidth, camera.viewportHeight);
 	}
 
 	@Override
 	public void render() {
-		batch.begin();
-		for(int i = 0; i < player.getMap().getLayerCount()-1; i++) {
-			player.getMap().render(batch, i, 0f, 0f);
-			player.getMap().renderConnections(batch, i, 0f, 0f);
+		stats.beginFrame();
+		long entityNanos;
+		if(TileMapCache.isEnabled()) {
+			entityNanos = renderCached();
+		} else {
+			TileMap map = player.getMap();
+			batch.begin();
+			for(int i = 0; i < map.getLayerCount()-1; i++) {
+				map.render(batch, i, 0f, 0f, viewBounds, stats);
+				map.renderConnections(batch, i, 0f, 0f, viewBounds, stats);
+			}
+			long start = TimeUtils.nanoTime();
+			renderEntities(map);
+			entityNanos = TimeUtils.nanoTime()-start;
+			map.render(batch, map.getLayerCount()-1, 0f, 0f, viewBounds, stats);
+			map.renderConnections(batch, map.getLayerCount()-1, 0f, 0f, viewBounds, stats);
+			batch.end();
+			stats.addRenderCalls(batch.renderCalls);
 		}
-		for(Entity e : player.getMap().getEntityList()) {
-			e.render(batch);
+		stats.endFrame(entityNanos);
+		if(showStats)
+			statsOverlay.render(stats);
+	}
+
+	/**
+	 * <p>Renders the map layers from their {@link TileMapCache} and the
+	 * entities with the batch.</p>
+	 * 
+	 * @return The time taken to render the entities in nanoseconds.
+	 */
+	private long renderCached() {
+		TileMap map = player.getMap();
+		for(int i = 0; i < map.getLayerCount()-1; i++) {
+			map.renderCached(camera.combined, i, 0f, 0f, viewBounds, stats);
+			map.renderConnectionsCached(camera.combined, i, 0f, 0f, viewBounds, stats);
 		}
-		player.getMap().render(batch, player.getMap().getLayerCount()-1, 0f, 0f);
-		player.getMap().renderConnections(batch, player.getMap().getLayerCount()-1, 0f, 0f);
+		long start = TimeUtils.nanoTime();
+		batch.begin();
+		renderEntities(map);
 		batch.end();
+		long entityNanos = TimeUtils.nanoTime()-start;
+		stats.addRenderCalls(batch.renderCalls);
+		map.renderCached(camera.combined, map.getLayerCount()-1, 0f, 0f, viewBounds, stats);
+		map.renderConnectionsCached(camera.combined, map.getLayerCount()-1, 0f, 0f, viewBounds, stats);
+		return entityNanos;
+	}
+
+	/**
+	 * <p>Renders the entities of a map from the back to the front, this must be
+	 * called between {@code begin} and {@code end} of the batch.</p>
+	 * 
+	 * @param map The map to render the entities of.
+	 */
+	private void renderEntities(TileMap map) {
+		EntityRenderOrder order = map.getRenderOrder();
+		order.update(map.getEntityList());
+		for(int i = 0; i < order.size(); i++)
+			order.get(i).render(batch);
+	}
+
+	/**
+	 * <p>Gets the stats of the last rendered frame.</p>
+	 * 
+	 * @return The {@link RenderStats}.
+	 */
+	public RenderStats getRenderStats() {
+		return this.stats;
+	}
+
+	/**
+	 * <p>Shows or hides the debug overlay, the GL calls are only profiled and
+	 * the visible tiles only counted while the overlay is shown.</p>
+	 * 
+	 * @param showStats Whether to show the overlay.
+	 */
+	public void setShowStats(boolean showStats) {
+		if(showStats && statsOverlay == null)
+			statsOverlay = new StatsOverlay(game);
+		this.showStats = showStats;
+		stats.setProfiling(showStats);
 	}
 
 	@Override
@@ -83,11 +179,16 @@ public class SceneMap implements Scene {
 		camera.position.setZero();
 		camera.update();
 		batch.setProjectionMatrix(camera.combined);
+		if(statsOverlay != null)
+			statsOverlay.resize(width, height);
 	}
 
 	@Override
 	public void dispose() {
 		batch.dispose();
+		if(statsOverlay != null)
+			statsOverlay.dispose();
+		stats.setProfiling(false);
 	}
 
 	@Override
@@ -106,11 +207,14 @@ public class SceneMap implements Scene {
 			right = true;
 			player.move(EntityDirection.DIRECTION_RIGHT);
 		} else if(keycode == Keys.ENTER) {
-			int index = game.getStoryIndex();
+			int index = game.getRequestedStoryIndex();
 			index++;
-			if(index >= game.getStoryList().size())
+			if(index >= game.getStoryCatalog().size())
 				index = 0;
 			game.setStory(index);
+		} else if(keycode == Keys.F3) {
+			setShowStats(!showStats);
+			return true;
 		}
 		return false;
 	}
@@ -6,9 +6,11 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.pokedroid.PokeDroid;
+import com.pokedroid.story.StoryLoader;
 
 /**
- * <p>The {@code SceneSplash} will display a simple splash screen.</p>
+ * <p>The {@code SceneSplash} will display a simple splash screen while the
+ * story is loaded in the background, showing how far through loading it is.</p>
  * 
  * @author PoketronHacker
  * @version v1.0
@@ -28,6 +30,8 @@ public class SceneSplash implements Scene {
 	private GlyphLayout layout;
 	private Camera camera;
 	private float timer;
+	private String progressText;
+	private int progressPercent = -1;
 
 	@Override
 	public void create(PokeDroid game) {
@@ -43,7 +47,18 @@ public class SceneSplash implements Scene {
 	@Override
 	public void update(float timeDelta) {
 		timer += timeDelta;
-		if(timer >= TIME_TO_MAP) {
+		StoryLoader loader = game.getStoryLoader();
+		if(loader != null) {
+			int percent = (int)(loader.getStory().getLoadProgress()*100f);
+			if(percent != progressPercent) {
+				progressPercent = percent;
+				progressText = "Loading... " + percent + "%";
+			}
+		} else if(game.getLoadedStory() == null && progressPercent != -2) {
+			progressPercent = -2;
+			progressText = "Unable to load the story.";
+		}
+		if(timer >= TIME_TO_MAP && loader == null && game.getLoadedStory() != null) {
 			game.getSceneManager().remove(this);
 			game.getSceneManager().push(new SceneMap());
 		}
@@ -55,6 +70,9 @@ public class SceneSplash implements Scene {
 		font.draw(batch, currentText,
 				((camera.viewportWidth-layout.width)/2f),
 				((camera.viewportHeight+layout.height)/2f));
+		if(progressText != null)
+			font.draw(batch, progressText, ((camera.viewportWidth-layout.width)/2f),
+					((camera.viewportHeight+layout.height)/2f)-(layout.height*3f));
 		batch.end();
 	}
 
@@ -0,0 +1,116 @@
+package com.pokedroid.scene;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
+import com.badlogic.gdx.utils.Disposable;
+import com.pokedroid.PokeDroid;
+import com.pokedroid.util.RenderStats;
+
+/**
+ * <p>The {@code StatsOverlay} draws the {@link RenderStats} of the last frame over
+ * the top of a {@link Scene}, along with a graph of the recent frame times and
+ * their histogram.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class StatsOverlay implements Disposable {
+	private static final float MARGIN = 8f, GRAPH_HEIGHT = 60f, BAR_WIDTH = 2f, MS_SCALE = 1.5f;
+	private static final String[] BUCKET_NAMES = new String[]{"<8ms", "<17ms", "<33ms", "<50ms", "50ms+"};
+
+	private PokeDroid game;
+	private Camera camera;
+	private BitmapFont font;
+	private SpriteBatch batch;
+	private ShapeRenderer shapes;
+	private StringBuilder text;
+
+	/**
+	 * <p>Constructor for a new {@code StatsOverlay}.</p>
+	 *
+	 * @param game The game.
+	 */
+	public StatsOverlay(PokeDroid game) {
+		this.game = game;
+		this.camera = game.createCamera();
+		this.font = new BitmapFont();
+		this.batch = new SpriteBatch();
+		this.shapes = new ShapeRenderer();
+		this.text = new StringBuilder();
+		this.batch.setProjectionMatrix(camera.combined);
+		this.shapes.setProjectionMatrix(camera.combined);
+	}
+
+	/**
+	 * <p>Renders the stats.</p>
+	 *
+	 * @param stats The stats to render.
+	 */
+	public void render(RenderStats stats) {
+		float[] times = stats.getFrameTimes();
+		shapes.begin(ShapeType.Filled);
+		for(int i = 0; i < stats.getFrameCount(); i++) {
+			int index = (stats.getFrameIndex()-stats.getFrameCount()+i+RenderStats.HISTORY_SIZE)
+					% RenderStats.HISTORY_SIZE;
+			float ms = times[index];
+			shapes.setColor(ms < RenderStats.HISTOGRAM_BOUNDS[1] ? Color.GREEN :
+				ms < RenderStats.HISTOGRAM_BOUNDS[2] ? Color.YELLOW : Color.RED);
+			shapes.rect(MARGIN+(i*BAR_WIDTH), MARGIN, BAR_WIDTH, Math.min(GRAPH_HEIGHT, ms*MS_SCALE));
+		}
+		shapes.end();
+
+		text.setLength(0);
+		text.append("Render Calls: ").append(stats.getRenderCalls()).append('\n');
+		text.append("Texture Binds: ").append(stats.getTextureBinds()).append('\n');
+		text.append("Tiles: ").append(stats.getTilesSubmitted()).append(" submitted, ")
+			.append(stats.getTilesVisible()).append(" visible\n");
+		text.append("Entities: ").append(stats.getEntityCount()).append(" (update ");
+		appendMillis(stats.getUpdateNanos());
+		text.append("ms, render ");
+		appendMillis(stats.getRenderNanos());
+		text.append("ms)\n");
+		int[] histogram = stats.getHistogram();
+		for(int i = 0; i < histogram.length; i++)
+			text.append(BUCKET_NAMES[i]).append(": ").append(histogram[i]).append(i == histogram.length-1 ? "" : "  ");
+		batch.begin();
+		font.draw(batch, text, MARGIN, camera.viewportHeight-MARGIN);
+		batch.end();
+	}
+
+	/**
+	 * <p>Appends a time in milliseconds to one decimal place without formatting a
+	 * float, so the text can be built every frame without allocating.</p>
+	 *
+	 * @param nanos The time in nanoseconds.
+	 */
+	private void appendMillis(long nanos) {
+		long tenths = nanos/100000L;
+		text.append(tenths/10).append('.').append(tenths%10);
+	}
+
+	/**
+	 * <p>An event caused by resizing the window.</p>
+	 *
+	 * @param width The width.
+	 * @param height The height.
+	 */
+	public void resize(int width, int height) {
+		camera = game.createCamera(width, height);
+		batch.setProjectionMatrix(camera.combined);
+		shapes.setProjectionMatrix(camera.combined);
+	}
+
+	@Override
+	public void dispose() {
+		font.dispose();
+		batch.dispose();
+		shapes.dispose();
+	}
+
+}
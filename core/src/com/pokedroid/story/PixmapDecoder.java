@@ -0,0 +1,232 @@
+package com.pokedroid.story;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * <p>A {@code PixmapDecoder} decodes the images of a {@link Story} in parallel on a
+ * fixed amount of worker threads, decoding a {@link Pixmap} does not use GL so only
+ * the upload of the textures is left to the rendering thread.</p>
+ *
+ * <p>The images of a story are decoded through a {@link Batch}, the decoded images
+ * are handed to the {@link StoryAtlas} of the batch on the thread that is reading
+ * the story. The memory held by images waiting to be decoded and images decoded but
+ * not yet handed to the atlas is limited, once the limit is reached reading waits
+ * for the workers to catch up.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class PixmapDecoder implements Disposable {
+	public static final long DEFAULT_MEMORY_LIMIT = 32L*1024L*1024L;
+
+	private final ExecutorService executor;
+	private final long memoryLimit;
+
+	/**
+	 * <p>Constructor for a new {@code PixmapDecoder} using a thread for each processor
+	 * other than the one rendering, up to four threads, and the
+	 * {@link PixmapDecoder#DEFAULT_MEMORY_LIMIT}.</p>
+	 */
+	public PixmapDecoder() {
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()-1)), DEFAULT_MEMORY_LIMIT);
+	}
+
+	/**
+	 * <p>Constructor for a new {@code PixmapDecoder}.</p>
+	 *
+	 * @param threads The amount of worker threads.
+	 * @param memoryLimit The amount of bytes images being decoded can hold at once.
+	 */
+	public PixmapDecoder(int threads, long memoryLimit) {
+		if(threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		this.memoryLimit = memoryLimit;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "PixmapDecoder");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * <p>Starts a new batch of images to decode.</p>
+	 *
+	 * @param atlas The atlas the decoded images are added to.
+	 * @return The batch.
+	 */
+	public Batch newBatch(StoryAtlas atlas) {
+		return new Batch(atlas);
+	}
+
+	@Override
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * <p>A {@code Batch} is the images of a single {@link Story}, it must only be used
+	 * by the thread reading the story.</p>
+	 *
+	 * @author PoketronHacker
+	 * @version v1.0
+	 * @since v1.0
+	 *
+	 */
+	public class Batch {
+		private final StoryAtlas atlas;
+		private final List<String> names;
+		private final List<Pixmap> decoded;
+		private long memory;
+		private int pending;
+		private Throwable error;
+		private String errorName;
+
+		private Batch(StoryAtlas atlas) {
+			this.atlas = atlas;
+			this.names = new ArrayList<String>();
+			this.decoded = new ArrayList<Pixmap>();
+		}
+
+		/**
+		 * <p>Decodes an image that has already been read, such as an entry of a zip.</p>
+		 *
+		 * @param name The name the image is added to the atlas by.
+		 * @param data The encoded image.
+		 */
+		public void decode(final String name, final byte[] data) {
+			final long size = data.length;
+			reserve(size);
+			submit(size, new Runnable() {
+				@Override
+				public void run() {
+					Pixmap p = null;
+					Throwable ex = null;
+					try {
+						p = new Pixmap(data, 0, data.length);
+					} catch (Throwable t) {
+						ex = t;
+					} finally {
+						complete(name, p, size, ex);
+					}
+				}
+			});
+		}
+
+		/**
+		 * <p>Reads and decodes an image file, the file is read on the worker thread.</p>
+		 *
+		 * @param name The name the image is added to the atlas by.
+		 * @param file The image file.
+		 */
+		public void decode(final String name, final FileHandle file) {
+			final long size = file.length();
+			reserve(size);
+			submit(size, new Runnable() {
+				@Override
+				public void run() {
+					Pixmap p = null;
+					Throwable ex = null;
+					try {
+						byte[] data = file.readBytes();
+						p = new Pixmap(data, 0, data.length);
+					} catch (Throwable t) {
+						ex = t;
+					} finally {
+						complete(name, p, size, ex);
+					}
+				}
+			});
+		}
+
+		/**
+		 * <p>Waits for every image of the batch to be decoded and adds them to the atlas.</p>
+		 *
+		 * @throws RuntimeException Thrown if an image could not be decoded, an
+		 * {@code Error} such as running out of memory is wrapped so the story fails
+		 * to load instead of the reading thread dying.
+		 */
+		public synchronized void finish() {
+			while(pending > 0) {
+				drain();
+				await();
+			}
+			drain();
+			if(error instanceof RuntimeException)
+				throw (RuntimeException)error;
+			if(error != null)
+				throw new GdxRuntimeException("Unable to decode " + errorName, error);
+		}
+
+		private void submit(long reserved, Runnable r) {
+			try {
+				executor.execute(r);
+			} catch (RuntimeException e) {
+				synchronized(this) {
+					pending--;
+					memory -= reserved;
+					notifyAll();
+				}
+				throw e;
+			}
+		}
+
+		private synchronized void reserve(long size) {
+			while(pending > 0 && memory+size > memoryLimit) {
+				drain();
+				if(pending > 0 && memory+size > memoryLimit)
+					await();
+			}
+			pending++;
+			memory += size;
+		}
+
+		private synchronized void complete(String name, Pixmap pixmap, long reserved, Throwable ex) {
+			pending--;
+			memory -= reserved;
+			if(pixmap != null) {
+				names.add(name);
+				decoded.add(pixmap);
+				memory += pixmap.getPixels().capacity();
+			} else if(error == null) {
+				error = ex;
+				errorName = name;
+			}
+			notifyAll();
+		}
+
+		private void drain() {
+			for(int i = 0; i < decoded.size(); i++) {
+				Pixmap p = decoded.get(i);
+				memory -= p.getPixels().capacity();
+				atlas.add(names.get(i), p);
+			}
+			names.clear();
+			decoded.clear();
+		}
+
+		private void await() {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while decoding images");
+			}
+		}
+
+	}
+
+}
@@ -1,10 +1,15 @@
 package com.pokedroid.story;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -13,12 +18,15 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
+import com.pokedroid.map.MapFile;
+import com.pokedroid.map.MapResidency;
 import com.pokedroid.map.TileMap;
 import com.pokedroid.map.TileSet;
+import com.pokedroid.map.World;
 
 /**
  * <p>A {@code Story} is loaded from a ZipFile or a directory and it determines
@@ -29,153 +37,319 @@ import com.pokedroid.map.TileSet;
  *
  */
 public class Story implements Disposable {
+	public static final int STAGE_UNLOADED = 0, STAGE_READING = 1, STAGE_UPLOADING = 2, STAGE_BUILDING = 3,
+			STAGE_LOADED = 4, STAGE_FAILED = 5;
 
 	private String storyName;
 	private FileHandle fileHandle;
 	private JsonValue storyJson;
 	private Map<String, TileMap> mapList;
 	private Map<String, TileSet> tilesetList;
-	private Map<String, Texture> textureList;
+	private Map<String, TextureRegion> textureList;
 	private Map<String, Music> musicList;
+	private List<World> worldList;
+	private StoryAtlas atlas;
+	private MapResidency residency;
 	private TileMap startMap;
-	private Texture playerTexture;
+	private TextureRegion playerTexture;
 	private int startX, startY;
+	private List<byte[]> tilesetData;
+	private Map<String, byte[]> mapData;
+	private Map<String, FileHandle> musicFiles;
+	private int musicCount;
+	private PixmapDecoder decoder;
+	private PixmapDecoder.Batch batch;
+	private volatile int stage;
+	private volatile float stageProgress;
 
 	/**
-	 * <p>Constructor for a new {@code Story}.</p>
+	 * <p>Constructor for a new {@code Story}, the story is loaded straight away.</p>
 	 * 
 	 * @param fileHandle The file handle the story is in.
 	 */
 	public Story(FileHandle fileHandle) {
+		this(fileHandle, true);
+	}
+
+	/**
+	 * <p>Constructor for a new {@code Story}.</p>
+	 * 
+	 * @param fileHandle The file handle the story is in.
+	 * @param load Whether to load the story straight away, otherwise it is loaded by
+	 * {@link Story#load()} or in the background by a {@link StoryLoader}.
+	 */
+	public Story(FileHandle fileHandle, boolean load) {
 		if(fileHandle == null)
 			throw new NullPointerException("file handle cannot be null");
 		this.fileHandle = fileHandle;
 		this.mapList = Collections.synchronizedMap(new HashMap<String, TileMap>());
 		this.tilesetList = Collections.synchronizedMap(new HashMap<String, TileSet>());
-		this.textureList = Collections.synchronizedMap(new HashMap<String, Texture>());
+		this.textureList = Collections.synchronizedMap(new HashMap<String, TextureRegion>());
+		this.atlas = new StoryAtlas();
 		this.musicList = Collections.synchronizedMap(new HashMap<String, Music>());
-		if(fileHandle.isDirectory()) {
-			loadStoryFromDirectory(fileHandle);
-		} else if(fileHandle.extension().equalsIgnoreCase("zip")) {
-			loadStoryFromZip(fileHandle);
+		this.worldList = Collections.synchronizedList(new ArrayList<World>());
+		this.tilesetData = new ArrayList<byte[]>();
+		this.mapData = new LinkedHashMap<String, byte[]>();
+		this.musicFiles = new LinkedHashMap<String, FileHandle>();
+		if(load)
+			load();
+	}
+
+	/**
+	 * <p>Loads the whole {@code Story} on the calling thread, this must be the
+	 * rendering thread.</p>
+	 */
+	public void load() {
+		readData();
+		while(uploadNext());
+		build();
+	}
+
+	/**
+	 * <p>Reads the files of the {@code Story}, decodes the images and packs them
+	 * onto the pages of the atlas. This does not use GL so it can be called from
+	 * a worker thread.</p>
+	 */
+	void readData() {
+		if(stage != STAGE_UNLOADED)
+			return;
+		setStage(STAGE_READING);
+		try {
+			if(decoder != null)
+				batch = decoder.newBatch(atlas);
+			if(fileHandle.isDirectory()) {
+				loadStoryFromDirectory(fileHandle);
+			} else if(fileHandle.extension().equalsIgnoreCase("zip")) {
+				loadStoryFromZip(fileHandle);
+			}
+			if(batch != null) {
+				batch.finish();
+				batch = null;
+			}
+			if(storyJson == null)
+				throw new IllegalStateException("story.json is missing");
+			atlas.packPixmaps();
+			musicCount = musicFiles.size();
+			setStage(STAGE_UPLOADING);
+		} catch (RuntimeException e) {
+			if(batch != null) {
+				try {
+					batch.finish();
+				} catch (RuntimeException ignored) {
+				}
+				batch = null;
+			}
+			fail(e);
 		}
 	}
 
 	/**
-	 * <p>Loads the {@code Story} data from a directory.</p>
+	 * <p>Creates the next texture of the atlas or opens the next piece of music,
+	 * this must be called on the rendering thread once the files have been read.
+	 * Each call does a single upload so they can be spread across frames.</p>
+	 * 
+	 * @return Whether there is more to upload.
+	 */
+	boolean uploadNext() {
+		if(stage != STAGE_UPLOADING)
+			return false;
+		try {
+			if(atlas.getUploadsRemaining() > 0) {
+				atlas.uploadNext();
+			} else if(!musicFiles.isEmpty()) {
+				String name = musicFiles.keySet().iterator().next();
+				System.out.println("Loading Music: " + name);
+				musicList.put(name, Gdx.audio.newMusic(musicFiles.remove(name)));
+			}
+			int total = atlas.getUploadCount()+musicCount;
+			stageProgress = (total == 0) ? 1f : 1f-((float)(atlas.getUploadsRemaining()+musicFiles.size())/total);
+			if(atlas.getUploadsRemaining() > 0 || !musicFiles.isEmpty())
+				return true;
+			textureList.putAll(atlas.getRegions());
+			setStage(STAGE_BUILDING);
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+		return false;
+	}
+
+	/**
+	 * <p>Creates the tilesets and maps once the textures have been uploaded, this
+	 * does not use GL so it can be called from a worker thread.</p>
+	 */
+	void build() {
+		if(stage != STAGE_BUILDING)
+			return;
+		try {
+			for(byte[] b : tilesetData) {
+				TileSet ts = new TileSet(new JsonReader().parse(new String(b)), textureList, atlas.getPixmaps());
+				System.out.println("Loading Tileset: " + ts);
+				tilesetList.put(ts.toString(), ts);
+			}
+			tilesetData.clear();
+			atlas.disposePixmaps();
+			residency = new MapResidency();
+			int built = 0, total = mapData.size();
+			for(Map.Entry<String, byte[]> e : mapData.entrySet()) {
+				String name = e.getKey().substring(e.getKey().lastIndexOf('/')+1);
+				TileMap m;
+				if(!MapFile.isMapFile(name) && mapData.containsKey(
+						e.getKey().substring(0, e.getKey().lastIndexOf('.')) + "." + MapFile.EXTENSION)) {
+					// The compiled copy of the map is loaded instead.
+					stageProgress = (float)++built/total;
+					continue;
+				}
+				System.out.println("Loading Tilemap: " + name);
+				if(MapFile.isMapFile(name)) {
+					MapFile mf = new MapFile(ByteBuffer.wrap(e.getValue()));
+					m = new TileMap(mf, tilesetList.get(mf.getTileset()));
+				} else {
+					JsonValue v = new JsonReader().parse(new String(e.getValue()));
+					m = new TileMap(v, tilesetList.get(v.getString("tileset")));
+				}
+				m.linkMusic(musicList);
+				mapList.put(m.getName(), m);
+				residency.add(m);
+				stageProgress = (float)++built/total;
+			}
+			mapData.clear();
+			for(TileMap m : mapList.values())
+				m.linkMaps(mapList);
+			startMap = mapList.get(storyJson.get("start_map").getString(0));
+			startX = storyJson.get("start_map").getInt(1);
+			startY = storyJson.get("start_map").getInt(2);
+			playerTexture = textureList.get(storyJson.get("characters").getString(0));
+			buildWorlds();
+			setStage(STAGE_LOADED);
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	private void setStage(int stage) {
+		this.stageProgress = 0f;
+		this.stage = stage;
+	}
+
+	private void fail(RuntimeException e) {
+		System.err.println("[Story] Unable to load " + fileHandle.name() + ": " + e.getMessage());
+		e.printStackTrace();
+		setStage(STAGE_FAILED);
+	}
+
+	/**
+	 * <p>Loads the {@code Story} data from a directory, every file is listed first
+	 * so the progress of reading them is known.</p>
 	 * 
 	 * @param dir The directory of the story.
 	 */
 	protected void loadStoryFromDirectory(FileHandle dir) {
 		this.storyJson = new JsonReader().parse(dir.child("story.json"));
 		this.storyName = this.storyJson.getString("name");
-		traverseDirectory(dir, Texture.class);
-		traverseDirectory(dir, Music.class);
-		traverseDirectory(dir, TileSet.class);
-		traverseDirectory(dir, TileMap.class);
+		List<FileHandle> files = new ArrayList<FileHandle>();
+		traverseDirectory(dir, files);
+		for(int i = 0; i < files.size(); i++) {
+			FileHandle f = files.get(i);
+			String path = f.path().substring(fileHandle.path().length()+1);
+			String name = f.name();
+			if(isImage(name)) {
+				if(batch != null) batch.decode(path, f);
+				else this.atlas.add(path, new Pixmap(f));
+			} else if(name.endsWith(".json") && name.startsWith("set_")) {
+				tilesetData.add(f.readBytes());
+			} else if((name.endsWith(".json") && name.startsWith("map_")) || MapFile.isMapFile(name)) {
+				mapData.put(path, f.readBytes());
+			} else if(name.toLowerCase().endsWith(".mp3") || name.toLowerCase().endsWith(".wav")) {
+				musicFiles.put(path, f);
+			}
+			stageProgress = (float)(i+1)/files.size();
+		}
+	}
+
+	/**
+	 * <p>Places every map into a {@link World} with the maps it is connected to,
+	 * the world of the starting map is built first so it is at the origin.</p>
+	 */
+	protected void buildWorlds() {
+		worldList.clear();
+		if(startMap != null)
+			worldList.add(new World(startMap, mapList.values()));
 		for(TileMap m : mapList.values())
-			m.linkMaps(mapList);
-		startMap = mapList.get(storyJson.get("start_map").getString(0));
-		startX = storyJson.get("start_map").getInt(1);
-		startY = storyJson.get("start_map").getInt(2);
-		playerTexture = textureList.get(storyJson.get("characters").getString(0));
-		
+			if(m.getWorld() == null)
+				worldList.add(new World(m, mapList.values()));
 	}
 
-	protected void traverseDirectory(FileHandle dir, Class<?> c) {
+	/**
+	 * <p>Adds every file within a directory and its sub directories to a list.</p>
+	 * 
+	 * @param dir The directory.
+	 * @param files The list to add the files to.
+	 */
+	protected void traverseDirectory(FileHandle dir, List<FileHandle> files) {
 		for(FileHandle f : dir.list()) {
-			if(f.isDirectory()) {
-				traverseDirectory(f, c);
-			} else {
-				if(c.equals(Texture.class)) {
-					String name = f.path().substring(fileHandle.path().length()+1);
-					if(name.toLowerCase().endsWith(".png") || name.toLowerCase().endsWith(".jpg")
-							|| name.toLowerCase().endsWith(".jpeg")
-							|| name.toLowerCase().endsWith(".bmp")) {
-						Texture tex = new Texture(f);
-						this.textureList.put(name, tex);
-					}
-				} else if(c.equals(TileMap.class)) {
-					String name = f.name();
-					if(name.endsWith(".json") && name.startsWith("map_")) {
-						System.out.println("Loading Tilemap: " + name);
-						JsonValue v = new JsonReader().parse(f);
-						TileMap m = new TileMap(v, tilesetList.get(v.getString("tileset")));
-						m.linkMusic(musicList);
-						mapList.put(m.getName(), m);
-					}
-				} else if(c.equals(TileSet.class)) {
-					String name = f.name();
-					if(name.endsWith(".json") && name.startsWith("set_")) {
-						System.out.println("Loading Tileset: " + name);
-						TileSet ts = new TileSet(new JsonReader().parse(f), textureList);
-						tilesetList.put(ts.toString(), ts);
-					}
-				} else if(c.equals(Music.class)) {
-					String name = f.path().substring(fileHandle.path().length()+1);
-					if(name.toLowerCase().endsWith(".mp3") || name.toLowerCase().endsWith(".wav")) {
-						System.out.println("Loading Music: " + name);
-						Music m = Gdx.audio.newMusic(f);
-						musicList.put(name, m);
-					}
-				}
-			}
+			if(f.isDirectory())
+				traverseDirectory(f, files);
+			else files.add(f);
 		}
 	}
 
 	/**
 	 * <p>Loads the {@code Story} data from a ZipFile.</p>
 	 * 
+	 * <p>The zip is read in a single pass so every entry is only inflated once,
+	 * images are decoded as they are read while the tilesets and maps are held
+	 * until {@link Story#build()} as they depend on the textures and tilesets.</p>
+	 * 
 	 * @param file The file to load from.
 	 */
 	protected void loadStoryFromZip(FileHandle file) {
-		ZipInputStream zis = new ZipInputStream(file.read());
+		final long length = file.length();
+		ZipInputStream zis = new ZipInputStream(new FilterInputStream(file.read()) {
+			private long read;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b != -1) progress(1);
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if(n > 0) progress(n);
+				return n;
+			}
+
+			private void progress(int n) {
+				read += n;
+				if(length > 0)
+					stageProgress = Math.min(1f, (float)read/length);
+			}
+		});
+		byte[] storyData = null;
 		ZipEntry ze;
 		try {
-			this.storyJson = new JsonReader().parse(findFile(zis, "story.json"));
-			this.storyName = this.storyJson.getString("name");
-			zis = new ZipInputStream(file.read());
 			while((ze = zis.getNextEntry()) != null) {
 				if(ze.isDirectory()) continue;
 				String name = (ze.getName().contains("/")) ? ze.getName().substring(ze.getName().lastIndexOf("/")+1) :
 					ze.toString();
-				if(name.toLowerCase().endsWith(".png") || name.toLowerCase().endsWith(".jpg")
-						|| name.toLowerCase().endsWith(".jpeg")
-						|| name.toLowerCase().endsWith(".bmp")) {
+				if(ze.toString().equals("story.json")) {
+					storyData = readFully(zis);
+				} else if(isImage(name)) {
 					byte[] b = readFully(zis);
-					Texture tex = new Texture(new Pixmap(b, 0, b.length));
-					textureList.put(ze.getName(), tex);
-				}
-			}
-			zis.close();
-			zis = new ZipInputStream(file.read());
-			while((ze = zis.getNextEntry()) != null) {
-				if(ze.isDirectory()) continue;
-				String name = (ze.getName().contains("/")) ? ze.getName().substring(ze.getName().lastIndexOf("/")+1) :
-					ze.toString();
-				if(name.endsWith(".json") && name.startsWith("set_")) {
-					TileSet ts = new TileSet(new JsonReader().parse(new String(readFully(zis))), textureList);
-					tilesetList.put(ts.toString(), ts);
+					if(batch != null) batch.decode(ze.getName(), b);
+					else atlas.add(ze.getName(), new Pixmap(b, 0, b.length));
+				} else if(name.endsWith(".json") && name.startsWith("set_")) {
+					tilesetData.add(readFully(zis));
+				} else if((name.endsWith(".json") && name.startsWith("map_")) || MapFile.isMapFile(name)) {
+					mapData.put(ze.getName(), readFully(zis));
 				}
 			}
-			zis.close();
-			zis = new ZipInputStream(file.read());
-			while((ze = zis.getNextEntry()) != null) {
-				if(ze.isDirectory()) continue;
-				String name = (ze.getName().contains("/")) ? ze.getName().substring(ze.getName().lastIndexOf("/")+1) :
-					ze.toString();
-				if(name.endsWith(".json") && name.startsWith("map_")) {
-					JsonValue v = new JsonReader().parse(new String(readFully(zis)));
-					TileMap m = new TileMap(v, tilesetList.get(v.getString("tileset")));
-					mapList.put(m.getName(), m);
-				}
+			if(storyData != null) {
+				this.storyJson = new JsonReader().parse(new String(storyData));
+				this.storyName = this.storyJson.getString("name");
 			}
-			for(TileMap m : mapList.values())
-				m.linkMaps(mapList);
-			startMap = mapList.get(storyJson.get("start_map").getString(0));
-			startX = storyJson.get("start_map").getInt(1);
-			startY = storyJson.get("start_map").getInt(2);
-			playerTexture = textureList.get(storyJson.get("characters").getString(0));
 		} catch (IOException e) {
 			System.err.println("[Story] Unable to read ZipFile(" + file.name() + "): " + e.getMessage());
 			e.printStackTrace();
@@ -190,39 +364,60 @@ public class Story implements Disposable {
 	}
 
 	/**
-	 * <p>Reads a specific file within a ZipInputStream.</p>
+	 * <p>Checks whether a file is an image that can be packed into the atlas.</p>
+	 * 
+	 * @param name The file name.
+	 * @return Whether the file is an image.
+	 */
+	protected static boolean isImage(String name) {
+		String lower = name.toLowerCase();
+		return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".bmp");
+	}
+
+	/**
+	 * <p>Sets the {@code PixmapDecoder} the images are decoded on while the {@code Story}
+	 * is read, without one they are decoded one after another on the reading thread.</p>
 	 * 
-	 * @param zis The zip input stream.
-	 * @param fileName The file name.
+	 * @param decoder The decoder, or {@code null}.
+	 */
+	public void setPixmapDecoder(PixmapDecoder decoder) {
+		this.decoder = decoder;
+	}
+
+	/**
+	 * <p>Gets the stage of loading the {@code Story} is at, such as
+	 * {@link Story#STAGE_LOADED}.</p>
 	 * 
-	 * @return An array of bytes as data.
-	 * @throws IOException Thrown if an IOException occurs.
+	 * @return The stage.
 	 */
-	protected byte[] readFile(ZipInputStream zis, String fileName) throws IOException {
-		InputStream is = findFile(zis, fileName);
-		byte[] b = null;
-		if(is != null)
-			b = readFully(is);
-		zis.close();
-		return b;
+	public int getStage() {
+		return this.stage;
 	}
 
 	/**
-	 * <p>Finds a specific file within a ZipInputStream.</p>
+	 * <p>Gets whether the {@code Story} has finished loading and can be played.</p>
 	 * 
-	 * @param zis The input stream.
-	 * @return The {@code InputStream} of the zip entry.
+	 * @return Whether the story is loaded.
+	 */
+	public boolean isLoaded() {
+		return stage == STAGE_LOADED;
+	}
+
+	/**
+	 * <p>Gets how far through loading the {@code Story} is, reading the files is
+	 * counted as the first 40%, uploading the textures as the next 20% and building
+	 * the maps as the rest.</p>
 	 * 
-	 * @throws IOException Thrown if an IOException occurs.
+	 * @return The progress from {@code 0} to {@code 1}.
 	 */
-	protected InputStream findFile(ZipInputStream zis, String fileName) throws IOException {
-		ZipEntry ze;
-		while((ze = zis.getNextEntry()) != null) {
-			if(ze.toString().endsWith("/")) continue;
-			if(ze.toString().equals(fileName))
-				return zis;
+	public float getLoadProgress() {
+		switch(stage) {
+		case STAGE_READING: return 0.4f*stageProgress;
+		case STAGE_UPLOADING: return 0.4f+(0.2f*stageProgress);
+		case STAGE_BUILDING: return 0.6f+(0.4f*stageProgress);
+		case STAGE_LOADED: return 1f;
+		default: return 0f;
 		}
-		return null;
 	}
 
 	/**
@@ -233,7 +428,7 @@ public class Story implements Disposable {
 	 * 
 	 * @throws IOException Thrown if an IOException occurs.
 	 */
-	protected byte[] readFully(InputStream zis) throws IOException {
+	protected static byte[] readFully(InputStream zis) throws IOException {
 		byte[] tempBuffer = new byte[2048];
 		int readBytes = 0;
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -245,12 +440,13 @@ public class Story implements Disposable {
 
 	@Override
 	public void dispose() {
+		for(TileMap m : mapList.values())
+			m.disposeCache();
 		for(Music m : musicList.values())
 			m.dispose();
 		for(TileSet t : tilesetList.values())
 			t.dispose();
-		for(Texture t : textureList.values())
-			t.dispose();
+		atlas.dispose();
 		tilesetList.clear();
 		musicList.clear();
 		textureList.clear();
@@ -288,7 +484,7 @@ public class Story implements Disposable {
 	 * 
 	 * @return The players texture.
 	 */
-	public Texture getPlayerTexture() {
+	public TextureRegion getPlayerTexture() {
 		return this.playerTexture;
 	}
 
@@ -301,6 +497,24 @@ public class Story implements Disposable {
 		return this.mapList;
 	}
 
+	/**
+	 * <p>Gets the {@code MapResidency} that decides which maps have their tiles loaded.</p>
+	 * 
+	 * @return The residency manager, or {@code null} until the story is built.
+	 */
+	public MapResidency getResidency() {
+		return this.residency;
+	}
+
+	/**
+	 * <p>Gets the worlds of this story, each holds a group of connected maps.</p>
+	 * 
+	 * @return The list of worlds.
+	 */
+	public List<World> getWorlds() {
+		return this.worldList;
+	}
+
 	@Override
 	public String toString() {
 		return this.storyName;
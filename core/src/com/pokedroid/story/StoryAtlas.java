@@ -0,0 +1,220 @@
+package com.pokedroid.story;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker.Page;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap.Entry;
+
+/**
+ * <p>A {@code StoryAtlas} packs every image of a {@link Story} into as few textures
+ * as possible, this means the tiles and the characters can be drawn without
+ * switching textures and flushing the batch.</p>
+ *
+ * <p>Images are added as a {@link Pixmap} and once they are all added {@link StoryAtlas#pack()}
+ * will create the textures and the regions, the regions are looked up by the same name
+ * the textures were before. The packing can also be split into {@link StoryAtlas#packPixmaps()},
+ * which can run on a worker thread, and {@link StoryAtlas#uploadNext()} on the rendering
+ * thread.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class StoryAtlas implements Disposable {
+	public static final int PAGE_SIZE = 2048;
+
+	private Map<String, Pixmap> pixmaps;
+	private Set<Pixmap> retained;
+	private Map<String, TextureRegion> regions;
+	private List<Texture> textures;
+	private PixmapPacker packer;
+	private List<Object> uploads;
+	private int uploadCount;
+
+	/**
+	 * <p>Constructor for an empty {@code StoryAtlas}.</p>
+	 */
+	public StoryAtlas() {
+		this.pixmaps = Collections.synchronizedMap(new HashMap<String, Pixmap>());
+		this.regions = Collections.synchronizedMap(new HashMap<String, TextureRegion>());
+		this.textures = new ArrayList<Texture>();
+		this.retained = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Pixmap, Boolean>()));
+	}
+
+	/**
+	 * <p>Adds an image to be packed.</p>
+	 *
+	 * @param name The name the region will be looked up by.
+	 * @param pixmap The image.
+	 */
+	public void add(String name, Pixmap pixmap) {
+		Pixmap old = pixmaps.put(name, pixmap);
+		if(old != null) old.dispose();
+	}
+
+	/**
+	 * <p>Packs every image that has been added onto pages of {@link StoryAtlas#PAGE_SIZE},
+	 * an image too big for a page is given a texture of its own. This must be called on
+	 * the rendering thread. The images are kept until {@link StoryAtlas#disposePixmaps()}
+	 * so that their pixels can still be read.</p>
+	 *
+	 * @return The regions by name.
+	 */
+	public Map<String, TextureRegion> pack() {
+		packPixmaps();
+		while(uploadNext());
+		return regions;
+	}
+
+	/**
+	 * <p>Packs every image that has been added onto the pages without creating any
+	 * textures, this only works with pixels so it can be called from any thread. The
+	 * textures are then created by {@link StoryAtlas#uploadNext()}.</p>
+	 */
+	public void packPixmaps() {
+		List<String> names = new ArrayList<String>(pixmaps.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return pixmaps.get(b).getHeight()-pixmaps.get(a).getHeight();
+			}
+		});
+		packer = new PixmapPacker(PAGE_SIZE, PAGE_SIZE, Format.RGBA8888, 0, false);
+		uploads = new ArrayList<Object>();
+		int packed = 0;
+		for(String name : names) {
+			Pixmap p = pixmaps.get(name);
+			if(p.getWidth() > PAGE_SIZE || p.getHeight() > PAGE_SIZE) {
+				uploads.add(name);
+				continue;
+			}
+			packer.pack(name, p);
+			packed++;
+		}
+		for(Page page : packer.getPages())
+			uploads.add(page);
+		uploadCount = uploads.size();
+		System.out.println("[StoryAtlas] Packed " + packed + " images onto " + packer.getPages().size
+				+ " pages, " + (names.size()-packed) + " images were too large.");
+	}
+
+	/**
+	 * <p>Creates the next texture of the atlas, either a page or an image too large for
+	 * a page, along with its regions. This must be called on the rendering thread after
+	 * {@link StoryAtlas#packPixmaps()}, so the uploads can be spread over many frames.</p>
+	 *
+	 * @return Whether there are more textures to create.
+	 */
+	public boolean uploadNext() {
+		if(uploads == null || uploads.isEmpty())
+			return false;
+		Object next = uploads.remove(0);
+		if(next instanceof Page) {
+			Page page = (Page)next;
+			page.updateTexture(TextureFilter.Nearest, TextureFilter.Nearest, false);
+			textures.add(page.getTexture());
+			for(Entry<String, Rectangle> e : page.getRects()) {
+				Rectangle r = e.value;
+				regions.put(e.key, new TextureRegion(page.getTexture(), (int)r.x, (int)r.y,
+						(int)r.width, (int)r.height));
+			}
+		} else {
+			String name = (String)next;
+			// The texture keeps its image so it can be reloaded when the context is lost.
+			final Pixmap image = pixmaps.get(name);
+			Texture t = new Texture(new PixmapTextureData(image, image.getFormat(), false, false, true)) {
+				@Override
+				public void dispose() {
+					super.dispose();
+					image.dispose();
+				}
+			};
+			retained.add(image);
+			textures.add(t);
+			regions.put(name, new TextureRegion(t));
+		}
+		return !uploads.isEmpty();
+	}
+
+	/**
+	 * <p>Gets the amount of textures left for {@link StoryAtlas#uploadNext()} to create.</p>
+	 *
+	 * @return The amount of textures left.
+	 */
+	public int getUploadsRemaining() {
+		return (uploads == null) ? 0 : uploads.size();
+	}
+
+	/**
+	 * <p>Gets the amount of textures {@link StoryAtlas#packPixmaps()} left to create.</p>
+	 *
+	 * @return The amount of textures.
+	 */
+	public int getUploadCount() {
+		return this.uploadCount;
+	}
+
+	/**
+	 * <p>Gets the regions of the packed images.</p>
+	 *
+	 * @return The regions by name.
+	 */
+	public Map<String, TextureRegion> getRegions() {
+		return this.regions;
+	}
+
+	/**
+	 * <p>Gets the images that have been added, these are only available until
+	 * {@link StoryAtlas#disposePixmaps()} is called.</p>
+	 *
+	 * @return The images by name.
+	 */
+	public Map<String, Pixmap> getPixmaps() {
+		return this.pixmaps;
+	}
+
+	/**
+	 * <p>Frees the images that have been added, once the atlas is packed they
+	 * are no longer needed to draw. The images too large for a page are kept by
+	 * their textures until the atlas is disposed.</p>
+	 */
+	public void disposePixmaps() {
+		for(Pixmap p : pixmaps.values())
+			if(!retained.contains(p))
+				p.dispose();
+		pixmaps.clear();
+	}
+
+	@Override
+	public void dispose() {
+		disposePixmaps();
+		for(Texture t : textures)
+			t.dispose();
+		retained.clear();
+		// A page texture frees its pixmap, the packer frees the pages that were never uploaded.
+		if(packer != null)
+			packer.dispose();
+		packer = null;
+		uploads = null;
+		textures.clear();
+		regions.clear();
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.pokedroid.story;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.SerializationException;
+
+/**
+ * <p>A {@code StoryCatalog} lists the stories that can be played without loading
+ * them, only the {@code story.json} of each is read. A {@link Story} is created
+ * from the catalog when it is chosen so only that story is held in memory.</p>
+ * 
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class StoryCatalog {
+	private List<FileHandle> files;
+	private List<String> names;
+
+	/**
+	 * <p>Constructor for a new, empty {@code StoryCatalog}.</p>
+	 */
+	public StoryCatalog() {
+		this.files = new ArrayList<FileHandle>();
+		this.names = new ArrayList<String>();
+	}
+
+	/**
+	 * <p>Adds a story to the catalog by reading its {@code story.json}, a story
+	 * that can not be read is left out.</p>
+	 * 
+	 * @param fileHandle The directory or zip the story is in.
+	 * @return Whether the story was added.
+	 */
+	public boolean add(FileHandle fileHandle) {
+		JsonValue manifest = readManifest(fileHandle);
+		if(manifest == null || !manifest.has("name")) {
+			System.err.println("[StoryCatalog] Unable to read the story.json of " + fileHandle.name());
+			return false;
+		}
+		files.add(fileHandle);
+		names.add(manifest.getString("name"));
+		return true;
+	}
+
+	/**
+	 * <p>Reads the {@code story.json} of a story, in a zip only the entries up to
+	 * the {@code story.json} are read.</p>
+	 * 
+	 * @param fileHandle The directory or zip the story is in.
+	 * @return The contents of the {@code story.json} or {@code null} if it can not be read.
+	 */
+	protected JsonValue readManifest(FileHandle fileHandle) {
+		try {
+			return parseManifest(fileHandle);
+		} catch (SerializationException e) {
+			System.err.println("[StoryCatalog] Invalid story.json in " + fileHandle.name() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * <p>Finds and parses the {@code story.json} of a story.</p>
+	 * 
+	 * @param fileHandle The directory or zip the story is in.
+	 * @return The contents of the {@code story.json} or {@code null} if there is none.
+	 * @throws SerializationException Thrown if the {@code story.json} is not valid JSON.
+	 */
+	private JsonValue parseManifest(FileHandle fileHandle) {
+		if(fileHandle.isDirectory()) {
+			FileHandle f = fileHandle.child("story.json");
+			return f.exists() ? new JsonReader().parse(f) : null;
+		}
+		if(!fileHandle.extension().equalsIgnoreCase("zip"))
+			return null;
+		ZipInputStream zis = new ZipInputStream(fileHandle.read());
+		try {
+			ZipEntry ze;
+			while((ze = zis.getNextEntry()) != null) {
+				if(ze.getName().equals("story.json"))
+					return new JsonReader().parse(new String(Story.readFully(zis)));
+			}
+		} catch (IOException e) {
+			System.err.println("[StoryCatalog] Unable to read ZipFile(" + fileHandle.name() + "): " + e.getMessage());
+		} finally {
+			try {
+				zis.close();
+			} catch (IOException e) {
+				System.err.println("[StoryCatalog] Unable to close ZipFile(" + fileHandle.name() + "): " + e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>Creates a new, unloaded {@code Story} for a story in the catalog.</p>
+	 * 
+	 * @param index The index of the story.
+	 * @return The story, it is loaded by {@link Story#load()} or a {@link StoryLoader}.
+	 */
+	public Story createStory(int index) {
+		return new Story(files.get(index), false);
+	}
+
+	/**
+	 * <p>Gets the name of a story in the catalog.</p>
+	 * 
+	 * @param index The index of the story.
+	 * @return The name of the story.
+	 */
+	public String getName(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * <p>Gets the file a story in the catalog is in.</p>
+	 * 
+	 * @param index The index of the story.
+	 * @return The directory or zip of the story.
+	 */
+	public FileHandle getFile(int index) {
+		return files.get(index);
+	}
+
+	/**
+	 * <p>Gets the amount of stories in the catalog.</p>
+	 * 
+	 * @return The amount of stories.
+	 */
+	public int size() {
+		return files.size();
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.pokedroid.story;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>A {@code StoryLoader} loads a {@link Story} in the background so the game
+ * keeps rendering while it loads.</p>
+ * 
+ * <p>Reading the files, decoding the images and packing the atlas are done on a
+ * worker thread, the textures and music are then created on the rendering thread
+ * a piece at a time by {@link StoryLoader#update(long)} before the tilesets and maps
+ * are built back on a worker thread.</p>
+ * 
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class StoryLoader {
+	private final ExecutorService executor;
+	private final Story story;
+	private boolean started, building;
+
+	/**
+	 * <p>Constructor for a new {@code StoryLoader}.</p>
+	 * 
+	 * @param executor The executor to run the worker stages on.
+	 * @param story The story to load, it must not have been loaded yet.
+	 */
+	public StoryLoader(ExecutorService executor, Story story) {
+		this.executor = executor;
+		this.story = story;
+	}
+
+	/**
+	 * <p>Starts reading the {@code Story} on a worker thread.</p>
+	 */
+	public void start() {
+		if(started)
+			return;
+		started = true;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				story.readData();
+			}
+		});
+	}
+
+	/**
+	 * <p>Uploads the textures of the {@code Story} until they are all uploaded or the
+	 * time allowed runs out, once they are all uploaded the maps are built on a worker
+	 * thread. This must be called on the rendering thread.</p>
+	 * 
+	 * @param budgetNanos The time allowed for uploading in nanoseconds.
+	 * @return Whether the story has finished loading.
+	 */
+	public boolean update(long budgetNanos) {
+		if(!started)
+			return false;
+		if(story.getStage() == Story.STAGE_UPLOADING) {
+			long end = System.nanoTime()+budgetNanos;
+			while(story.uploadNext() && System.nanoTime() < end);
+		}
+		if(story.getStage() == Story.STAGE_BUILDING && !building) {
+			building = true;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					story.build();
+				}
+			});
+		}
+		return isDone();
+	}
+
+	/**
+	 * <p>Gets whether the {@code Story} has finished loading, either because it is
+	 * loaded or it failed to load.</p>
+	 * 
+	 * @return Whether loading has finished.
+	 */
+	public boolean isDone() {
+		int stage = story.getStage();
+		return stage == Story.STAGE_LOADED || stage == Story.STAGE_FAILED;
+	}
+
+	/**
+	 * <p>Gets the {@code Story} being loaded.</p>
+	 * 
+	 * @return The story.
+	 */
+	public Story getStory() {
+		return this.story;
+	}
+
+}
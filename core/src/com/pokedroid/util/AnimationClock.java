@@ -0,0 +1,37 @@
+package com.pokedroid.util;
+
+/**
+ * <p>The {@code AnimationClock} is the single clock every tile animation is driven
+ * by, this keeps every animated tile in step no matter which map it is on.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public final class AnimationClock {
+
+	private static double time;
+
+	/** <p>Private Constructor.</p> */
+	private AnimationClock() {}
+
+	/**
+	 * <p>Advances the clock.</p>
+	 *
+	 * @param timeDelta The delta time.
+	 */
+	public static void update(float timeDelta) {
+		time += timeDelta;
+	}
+
+	/**
+	 * <p>Gets the time since the clock started.</p>
+	 *
+	 * @return The time in seconds.
+	 */
+	public static double getTime() {
+		return time;
+	}
+
+}
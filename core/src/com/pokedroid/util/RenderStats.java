@@ -0,0 +1,266 @@
+package com.pokedroid.util;
+
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+
+/**
+ * <p>The {@code RenderStats} collects the cost of each frame, such as the amount
+ * of render calls, texture binds and tiles drawn, along with a rolling history
+ * of frame times.</p>
+ *
+ * <p>The values of the last finished frame are returned by the getters while the
+ * values of the current frame are being counted.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class RenderStats {
+	public static final int HISTORY_SIZE = 120;
+	/** <p>The upper bounds in milliseconds of each histogram bucket, the last bucket holds the rest.</p> */
+	public static final float[] HISTOGRAM_BOUNDS = new float[]{8.33f, 16.67f, 33.33f, 50f};
+
+	private int renderCalls, textureBinds, tilesSubmitted, tilesVisible, entityCount;
+	private long updateNanos, renderNanos;
+	private int curRenderCalls, curTilesSubmitted, curTilesVisible;
+
+	private final float[] frameTimes;
+	private final int[] histogram;
+	private int frameIndex, frameCount;
+	private boolean profiling;
+
+	/**
+	 * <p>Constructor for a new {@code RenderStats}.</p>
+	 */
+	public RenderStats() {
+		this.frameTimes = new float[HISTORY_SIZE];
+		this.histogram = new int[HISTOGRAM_BOUNDS.length+1];
+	}
+
+	/**
+	 * <p>Enables or disables profiling, this is required for the texture binds
+	 * and the visible tiles to be counted as both add to the cost of a frame.</p>
+	 *
+	 * @param enabled Whether profiling is enabled.
+	 */
+	public void setProfiling(boolean enabled) {
+		this.profiling = enabled;
+		if(enabled && !GLProfiler.isEnabled())
+			GLProfiler.enable();
+		else if(!enabled && GLProfiler.isEnabled())
+			GLProfiler.disable();
+	}
+
+	/**
+	 * <p>Gets whether profiling is enabled, the visible tiles should only be
+	 * counted while it is.</p>
+	 *
+	 * @return Whether profiling is enabled.
+	 */
+	public boolean isProfiling() {
+		return this.profiling;
+	}
+
+	/**
+	 * <p>Starts counting a new frame.</p>
+	 */
+	public void beginFrame() {
+		curRenderCalls = curTilesSubmitted = curTilesVisible = 0;
+		if(GLProfiler.isEnabled())
+			GLProfiler.reset();
+	}
+
+	/**
+	 * <p>Finishes counting the current frame.</p>
+	 *
+	 * @param renderNanos The time taken to render the entities in nanoseconds.
+	 */
+	public void endFrame(long renderNanos) {
+		this.renderCalls = curRenderCalls;
+		this.tilesSubmitted = curTilesSubmitted;
+		this.tilesVisible = curTilesVisible;
+		this.textureBinds = GLProfiler.isEnabled() ? GLProfiler.textureBindings : -1;
+		this.renderNanos = renderNanos;
+	}
+
+	/**
+	 * <p>Records the update of the entities.</p>
+	 *
+	 * @param entityCount The amount of entities updated.
+	 * @param updateNanos The time taken to update the entities in nanoseconds.
+	 */
+	public void recordUpdate(int entityCount, long updateNanos) {
+		this.entityCount = entityCount;
+		this.updateNanos = updateNanos;
+	}
+
+	/**
+	 * <p>Adds the time of a frame to the history and the histogram.</p>
+	 *
+	 * @param timeDelta The frame time in seconds.
+	 */
+	public void recordFrameTime(float timeDelta) {
+		float ms = timeDelta*1000f;
+		if(frameCount == HISTORY_SIZE)
+			histogram[bucket(frameTimes[frameIndex])]--;
+		else frameCount++;
+		frameTimes[frameIndex] = ms;
+		histogram[bucket(ms)]++;
+		frameIndex = (frameIndex+1) % HISTORY_SIZE;
+	}
+
+	/**
+	 * <p>Gets the histogram bucket a frame time belongs to.</p>
+	 *
+	 * @param ms The frame time in milliseconds.
+	 * @return The bucket index.
+	 */
+	private static int bucket(float ms) {
+		for(int i = 0; i < HISTOGRAM_BOUNDS.length; i++)
+			if(ms < HISTOGRAM_BOUNDS[i])
+				return i;
+		return HISTOGRAM_BOUNDS.length;
+	}
+
+	/**
+	 * <p>Adds render calls to the current frame.</p>
+	 *
+	 * @param calls The amount of render calls.
+	 */
+	public void addRenderCalls(int calls) {
+		this.curRenderCalls += calls;
+	}
+
+	/**
+	 * <p>Adds tiles to the current frame.</p>
+	 *
+	 * @param submitted The amount of tiles sent to be drawn.
+	 * @param visible The amount of those tiles that are within the view, {@code 0} when not profiling.
+	 */
+	public void addTiles(int submitted, int visible) {
+		this.curTilesSubmitted += submitted;
+		this.curTilesVisible += visible;
+	}
+
+	/**
+	 * <p>Gets the render calls of the last frame.</p>
+	 *
+	 * @return The render calls of the last frame.
+	 */
+	public int getRenderCalls() {
+		return this.renderCalls;
+	}
+
+	/**
+	 * <p>Gets the texture binds of the last frame, these are only counted
+	 * while profiling is enabled with {@link RenderStats#setProfiling(boolean)}.</p>
+	 *
+	 * @return The texture binds, or {@code -1} if they were not counted for the last frame.
+	 */
+	public int getTextureBinds() {
+		return this.textureBinds;
+	}
+
+	/**
+	 * <p>Gets the amount of tiles sent to be drawn in the last frame.</p>
+	 *
+	 * @return The amount of tiles submitted.
+	 */
+	public int getTilesSubmitted() {
+		return this.tilesSubmitted;
+	}
+
+	/**
+	 * <p>Gets the amount of tiles within the view in the last frame, these are
+	 * only counted while profiling.</p>
+	 *
+	 * @return The amount of tiles visible.
+	 */
+	public int getTilesVisible() {
+		return this.tilesVisible;
+	}
+
+	/**
+	 * <p>Gets the amount of entities updated in the last frame.</p>
+	 *
+	 * @return The amount of entities.
+	 */
+	public int getEntityCount() {
+		return this.entityCount;
+	}
+
+	/**
+	 * <p>Gets the time taken to update the entities in the last frame.</p>
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public float getUpdateTime() {
+		return this.updateNanos/1000000f;
+	}
+
+	/**
+	 * <p>Gets the time taken to update the entities in the last frame.</p>
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public long getUpdateNanos() {
+		return this.updateNanos;
+	}
+
+	/**
+	 * <p>Gets the time taken to render the entities in the last frame.</p>
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public float getRenderTime() {
+		return this.renderNanos/1000000f;
+	}
+
+	/**
+	 * <p>Gets the time taken to render the entities in the last frame.</p>
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public long getRenderNanos() {
+		return this.renderNanos;
+	}
+
+	/**
+	 * <p>Gets the frame time history, the oldest entry is at
+	 * {@link RenderStats#getFrameIndex()}.</p>
+	 *
+	 * @return The frame times in milliseconds.
+	 */
+	public float[] getFrameTimes() {
+		return this.frameTimes;
+	}
+
+	/**
+	 * <p>Gets the index the next frame time will be written to.</p>
+	 *
+	 * @return The index of the next frame time.
+	 */
+	public int getFrameIndex() {
+		return this.frameIndex;
+	}
+
+	/**
+	 * <p>Gets the amount of frames recorded within the history.</p>
+	 *
+	 * @return The amount of frames recorded.
+	 */
+	public int getFrameCount() {
+		return this.frameCount;
+	}
+
+	/**
+	 * <p>Gets the histogram of the frame time history, each bucket is bounded
+	 * by {@link RenderStats#HISTOGRAM_BOUNDS}.</p>
+	 *
+	 * @return The amount of frames in each bucket.
+	 */
+	public int[] getHistogram() {
+		return this.histogram;
+	}
+
+}
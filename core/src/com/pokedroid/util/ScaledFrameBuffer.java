@@ -0,0 +1,163 @@
+package com.pokedroid.util;
+
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Disposable;
+import com.pokedroid.PokeDroid;
+
+/**
+ * <p>A {@code ScaledFrameBuffer} is rendered onto at the native resolution of the
+ * game and then drawn onto the screen at a whole number scale, this means each
+ * tile is only rasterized once at its own size rather than at the size of the
+ * screen.</p>
+ *
+ * <p>The scale is the whole number closest to the screen width divided by
+ * {@link PokeDroid#VIRTUAL_WIDTH}, so at a screen width that is a multiple of
+ * the virtual width the result is the same as drawing straight onto the screen.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class ScaledFrameBuffer implements Disposable {
+
+	private FrameBuffer frameBuffer;
+	private TextureRegion region;
+	private SpriteBatch batch;
+	private static boolean enabled;
+
+	private int scale;
+
+	/**
+	 * <p>Constructor for a new {@code ScaledFrameBuffer}.</p>
+	 *
+	 * @param screenWidth The width of the screen.
+	 * @param screenHeight The height of the screen.
+	 */
+	public ScaledFrameBuffer(int screenWidth, int screenHeight) {
+		this.batch = new SpriteBatch();
+		resize(screenWidth, screenHeight);
+	}
+
+	/**
+	 * <p>Recreates the frame buffer for a new screen size.</p>
+	 *
+	 * @param screenWidth The width of the screen.
+	 * @param screenHeight The height of the screen.
+	 */
+	public void resize(int screenWidth, int screenHeight) {
+		if(frameBuffer != null)
+			frameBuffer.dispose();
+		this.scale = getScale(screenWidth);
+		this.frameBuffer = new FrameBuffer(Format.RGBA8888, getBufferSize(screenWidth, scale),
+				getBufferSize(screenHeight, scale), false);
+		this.frameBuffer.getColorBufferTexture().setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		this.region = new TextureRegion(frameBuffer.getColorBufferTexture());
+		this.region.flip(false, true);
+		this.batch.getProjectionMatrix().setToOrtho2D(0, 0, screenWidth, screenHeight);
+	}
+
+	/**
+	 * <p>Starts drawing onto the frame buffer.</p>
+	 */
+	public void begin() {
+		frameBuffer.begin();
+	}
+
+	/**
+	 * <p>Stops drawing onto the frame buffer.</p>
+	 */
+	public void end() {
+		frameBuffer.end();
+	}
+
+	/**
+	 * <p>Draws the frame buffer onto the screen, anything past the edge of the
+	 * screen from rounding the size up is cut off at the top and right.</p>
+	 */
+	public void render() {
+		batch.begin();
+		batch.draw(region, 0f, 0f, frameBuffer.getWidth()*scale, frameBuffer.getHeight()*scale);
+		batch.end();
+	}
+
+	@Override
+	public void dispose() {
+		if(frameBuffer != null)
+			frameBuffer.dispose();
+		batch.dispose();
+		frameBuffer = null;
+	}
+
+	/**
+	 * <p>Gets the width of the frame buffer.</p>
+	 *
+	 * @return The width in pixels.
+	 */
+	public int getWidth() {
+		return frameBuffer.getWidth();
+	}
+
+	/**
+	 * <p>Gets the height of the frame buffer.</p>
+	 *
+	 * @return The height in pixels.
+	 */
+	public int getHeight() {
+		return frameBuffer.getHeight();
+	}
+
+	/**
+	 * <p>Gets the whole number scale the frame buffer is drawn at.</p>
+	 *
+	 * @return The scale.
+	 */
+	public int getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * <p>Enables or disables rendering the world through a {@code ScaledFrameBuffer},
+	 * this must be set before the game is created.</p>
+	 *
+	 * @param enabled Whether low resolution rendering is enabled.
+	 */
+	public static void setEnabled(boolean enabled) {
+		ScaledFrameBuffer.enabled = enabled;
+	}
+
+	/**
+	 * <p>Gets whether the world is rendered through a {@code ScaledFrameBuffer}.</p>
+	 *
+	 * @return Whether low resolution rendering is enabled.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * <p>Gets the whole number scale for a screen width.</p>
+	 *
+	 * @param screenWidth The width of the screen.
+	 * @return The scale, at least {@code 1}.
+	 */
+	public static int getScale(int screenWidth) {
+		return Math.max(1, Math.round((float)screenWidth/(float)PokeDroid.VIRTUAL_WIDTH));
+	}
+
+	/**
+	 * <p>Gets a side of the frame buffer for a side of the screen.</p>
+	 *
+	 * @param screenSize The width or height of the screen.
+	 * @param scale The scale.
+	 * @return The size of the frame buffer.
+	 */
+	public static int getBufferSize(int screenSize, int scale) {
+		return Math.max(1, (screenSize+scale-1)/scale);
+	}
+
+}
@@ -3,6 +3,8 @@ package com.pokedroid.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.pokedroid.PokeDroid;
+import com.pokedroid.map.TileMapCache;
+import com.pokedroid.util.ScaledFrameBuffer;
 
 /**
  * <p>This is the entry-point for a desktop application, this uses LibGDX's LWJGL wrapper.</p>
@@ -25,6 +27,12 @@ public class DesktopLauncher {
 		config.title = DESKTOP_TITLE;
 		config.width = (int)(PokeDroid.VIRTUAL_WIDTH);
 		config.height = (int)(PokeDroid.VIRTUAL_WIDTH * ASPECT_WIDESCREEN);
+		for(String arg : args) {
+			if(arg.equals("--cached-render"))
+				TileMapCache.setEnabled(true);
+			else if(arg.equals("--low-res"))
+				ScaledFrameBuffer.setEnabled(true);
+		}
 		new LwjglApplication(new PokeDroid(), config);
 	}
 }
@@ -0,0 +1,121 @@
+package com.pokedroid.desktop.benchmark;
+
+import java.util.Random;
+
+import com.pokedroid.map.Path;
+import com.pokedroid.map.PathCache;
+import com.pokedroid.map.PathFinder;
+import com.pokedroid.map.PathGrid;
+import com.pokedroid.map.TileSet;
+
+/**
+ * <p>Measures the time taken by {@link PathFinder} to find paths between random
+ * tiles of large generated maps with walls and rows of ledges, along with the time
+ * taken when the same paths are read back from a {@link PathCache}.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class PathFinderBenchmark {
+	private static final int[] SIZES = new int[]{128, 512, 1024};
+	private static final int QUERIES = 200, WARMUP = 50;
+
+	/**
+	 * <p>The entry point.</p>
+	 *
+	 * @param args The application arguments.
+	 */
+	public static void main(String[] args) {
+		PathFinder finder = new PathFinder();
+		Path path = new Path();
+		for(int size : SIZES) {
+			GeneratedGrid grid = new GeneratedGrid(size, size, new Random(size));
+			Random random = new Random(0);
+			int[] queries = new int[QUERIES*4];
+			for(int i = 0; i < queries.length; i += 2) {
+				int x, y;
+				do {
+					x = random.nextInt(size);
+					y = random.nextInt(size);
+				} while((grid.getCellFlags(x, y) & TileSet.SOLID_FLAG) != 0);
+				queries[i] = x;
+				queries[i+1] = y;
+			}
+			for(int i = 0; i < WARMUP; i++)
+				finder.findPath(grid, queries[0], queries[1], queries[2], queries[3], path);
+
+			long start = System.nanoTime();
+			int found = 0, steps = 0;
+			long expanded = 0;
+			for(int q = 0; q < queries.length; q += 4) {
+				if(finder.findPath(grid, queries[q], queries[q+1], queries[q+2], queries[q+3], path)) {
+					found++;
+					steps += path.getLength();
+				}
+				expanded += finder.getLastExpanded();
+			}
+			long searchNanos = System.nanoTime()-start;
+
+			PathCache cache = new PathCache(QUERIES);
+			for(int q = 0; q < queries.length; q += 4) {
+				int from = queries[q] + (queries[q+1] * size), to = queries[q+2] + (queries[q+3] * size);
+				boolean ok = finder.findPath(grid, queries[q], queries[q+1], queries[q+2], queries[q+3], path);
+				cache.put(grid, 0, from, to, ok ? path : null);
+			}
+			start = System.nanoTime();
+			for(int q = 0; q < queries.length; q += 4) {
+				int from = queries[q] + (queries[q+1] * size), to = queries[q+2] + (queries[q+3] * size);
+				cache.get(grid, 0, from, to, path);
+			}
+			long cachedNanos = System.nanoTime()-start;
+
+			System.out.println(size + "x" + size + ": " + found + "/" + QUERIES + " paths found, "
+					+ (steps/Math.max(1, found)) + " steps and " + (expanded/QUERIES) + " cells expanded on average");
+			System.out.println("  search " + (searchNanos/QUERIES/1000) + "us per path, cached "
+					+ (cachedNanos/QUERIES/1000) + "us per path");
+		}
+	}
+
+	/**
+	 * <p>A {@link PathGrid} with random walls and a row of downward ledges every
+	 * sixteen rows, each ledge row has gaps so it can be walked through both ways.</p>
+	 */
+	private static class GeneratedGrid implements PathGrid {
+		private final int width, height;
+		private final byte[] flags;
+
+		public GeneratedGrid(int width, int height, Random random) {
+			this.width = width;
+			this.height = height;
+			this.flags = new byte[width*height];
+			for(int y = 0; y < height; y++) {
+				for(int x = 0; x < width; x++) {
+					int f = 0;
+					if(random.nextInt(100) < 25)
+						f = TileSet.SOLID_FLAG;
+					else if(y % 16 == 8 && x % 24 != 0)
+						f = TileSet.LEDGE_FLAG_DOWN;
+					flags[x + (y * width)] = (byte)f;
+				}
+			}
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		@Override
+		public int getCellFlags(int x, int y) {
+			return flags[x + (y * width)];
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.pokedroid.desktop.benchmark;
+
+import java.util.Random;
+
+import com.pokedroid.map.TileLayer;
+import com.pokedroid.map.TileStorage;
+
+/**
+ * <p>Measures the memory used by the tiles of a 1000x1000 map with three layers,
+ * comparing an {@code int[layers][width*height]} with a {@link TileLayer} using
+ * each type of {@link TileStorage}, along with the time taken to read every tile.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class TileStorageBenchmark {
+	private static final int WIDTH = 1000, HEIGHT = 1000, LAYERS = 3, READ_PASSES = 10;
+	private static final int[] TILE_COUNTS = new int[]{TileStorage.BYTE_MAX_TILE, 4096, 100000};
+
+	/**
+	 * <p>The entry point.</p>
+	 *
+	 * @param args The application arguments.
+	 */
+	public static void main(String[] args) {
+		System.out.println("Map of " + WIDTH + "x" + HEIGHT + " with " + LAYERS + " layers");
+		long before = usedMemory();
+		int[][] ints = new int[LAYERS][WIDTH*HEIGHT];
+		Random random = new Random(0);
+		for(int l = 0; l < LAYERS; l++)
+			for(int i = 0; i < ints[l].length; i++)
+				ints[l][i] = random.nextInt(TILE_COUNTS[0]);
+		long intBytes = usedMemory()-before;
+		long start = System.nanoTime();
+		long sum = 0;
+		for(int p = 0; p < READ_PASSES; p++)
+			for(int l = 0; l < LAYERS; l++)
+				for(int i = 0; i < ints[l].length; i++)
+					sum += ints[l][i];
+		report("int[][]", (long)LAYERS*WIDTH*HEIGHT*4, intBytes, System.nanoTime()-start, sum);
+		ints = null;
+
+		for(int count : TILE_COUNTS) {
+			before = usedMemory();
+			TileLayer[] layers = new TileLayer[LAYERS];
+			random = new Random(0);
+			for(int l = 0; l < LAYERS; l++) {
+				layers[l] = new TileLayer(WIDTH, HEIGHT, count);
+				for(int y = 0; y < HEIGHT; y++)
+					for(int x = 0; x < WIDTH; x++)
+						layers[l].set(x, y, random.nextInt(count));
+			}
+			long used = usedMemory()-before;
+			long tileBytes = 0;
+			for(TileLayer layer : layers)
+				tileBytes += layer.getTileBytes();
+			start = System.nanoTime();
+			sum = 0;
+			for(int p = 0; p < READ_PASSES; p++)
+				for(int l = 0; l < LAYERS; l++)
+					for(int y = 0; y < HEIGHT; y++)
+						for(int x = 0; x < WIDTH; x++)
+							sum += layers[l].get(x, y);
+			report("TileLayer(" + count + " tiles)", tileBytes, used, System.nanoTime()-start, sum);
+			System.out.println("  saving over int[][]: " + (100-((used*100)/Math.max(1, intBytes))) + "%");
+		}
+	}
+
+	/**
+	 * <p>Prints the result of a single storage.</p>
+	 *
+	 * @param name The name of the storage.
+	 * @param tileBytes The bytes used by the tiles alone.
+	 * @param used The growth of the heap.
+	 * @param readNanos The time taken to read every tile {@link TileStorageBenchmark#READ_PASSES} times.
+	 * @param sum The sum of the tiles, printed so the reads are not optimised away.
+	 */
+	private static void report(String name, long tileBytes, long used, long readNanos, long sum) {
+		System.out.println(name + ": tiles " + (tileBytes/1024) + "KB, heap " + (used/1024) + "KB, read "
+				+ (readNanos/READ_PASSES/1000) + "us per pass (" + sum + ")");
+	}
+
+	/**
+	 * <p>Gets the memory used by the heap after collecting garbage.</p>
+	 *
+	 * @return The used memory in bytes.
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory()-runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.pokedroid.desktop.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <p>Measures the time taken to read the entries of the bundled stories, comparing
+ * the old loader that opened each zip four times, once for the {@code story.json}
+ * then once each for the images, tilesets and maps, with reading every entry in a
+ * single pass. Only the zip reading is measured, not the decoding of the entries.</p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public class ZipLoadBenchmark {
+	private static final String[] DEFAULT_STORIES = new String[]{"android/assets/PokemonRed.zip",
+			"android/assets/mainStory.zip", "android/assets/mainStoryRevamp.zip"};
+	private static final int RUNS = 20;
+
+	/**
+	 * <p>The entry point.</p>
+	 *
+	 * @param args The zip files to read, the bundled stories are used if there are none.
+	 * @throws IOException Thrown if a zip can not be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] stories = (args.length == 0) ? DEFAULT_STORIES : args;
+		for(String story : stories) {
+			File file = new File(story);
+			if(!file.exists()) {
+				System.err.println("[ZipLoadBenchmark] Unable to find " + story);
+				continue;
+			}
+			for(int i = 0; i < 3; i++) {
+				readMultiPass(file);
+				readSinglePass(file);
+			}
+			long start = System.nanoTime();
+			long multiBytes = 0;
+			for(int i = 0; i < RUNS; i++)
+				multiBytes = readMultiPass(file);
+			long multi = (System.nanoTime()-start)/RUNS;
+			start = System.nanoTime();
+			long singleBytes = 0;
+			for(int i = 0; i < RUNS; i++)
+				singleBytes = readSinglePass(file);
+			long single = (System.nanoTime()-start)/RUNS;
+			System.out.println(file.getName() + " (" + (file.length()/1024) + "KB): four passes "
+					+ (multi/1000) + "us reading " + (multiBytes/1024) + "KB, single pass " + (single/1000)
+					+ "us reading " + (singleBytes/1024) + "KB, " + (100-((single*100)/Math.max(1, multi)))
+					+ "% faster");
+		}
+	}
+
+	/**
+	 * <p>Reads a zip the way the old loader did.</p>
+	 *
+	 * @param file The zip.
+	 * @return The amount of bytes inflated.
+	 */
+	private static long readMultiPass(File file) throws IOException {
+		long bytes = 0;
+		ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
+		ZipEntry ze;
+		while((ze = zis.getNextEntry()) != null) {
+			if(ze.getName().equals("story.json")) {
+				bytes += readFully(zis);
+				break;
+			}
+		}
+		zis.close();
+		String[][] passes = new String[][]{{"", ".png"}, {"set_", ".json"}, {"map_", ".json"}};
+		for(String[] pass : passes) {
+			zis = new ZipInputStream(new FileInputStream(file));
+			while((ze = zis.getNextEntry()) != null) {
+				if(ze.isDirectory()) continue;
+				String name = ze.getName().substring(ze.getName().lastIndexOf('/')+1);
+				if(name.startsWith(pass[0]) && name.toLowerCase().endsWith(pass[1]))
+					bytes += readFully(zis);
+			}
+			zis.close();
+		}
+		return bytes;
+	}
+
+	/**
+	 * <p>Reads every entry of a zip in one pass.</p>
+	 *
+	 * @param file The zip.
+	 * @return The amount of bytes inflated.
+	 */
+	private static long readSinglePass(File file) throws IOException {
+		long bytes = 0;
+		ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
+		ZipEntry ze;
+		while((ze = zis.getNextEntry()) != null) {
+			if(ze.isDirectory()) continue;
+			String name = ze.getName().substring(ze.getName().lastIndexOf('/')+1);
+			if(ze.getName().equals("story.json") || name.toLowerCase().endsWith(".png")
+					|| name.endsWith(".json"))
+				bytes += readFully(zis);
+		}
+		zis.close();
+		return bytes;
+	}
+
+	private static long readFully(InputStream in) throws IOException {
+		byte[] buffer = new byte[2048];
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		int read;
+		while((read = in.read(buffer)) != -1)
+			bos.write(buffer, 0, read);
+		return bos.size();
+	}
+
+}
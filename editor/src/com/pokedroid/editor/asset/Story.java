@@ -13,6 +13,7 @@ import java.util.Map;
 
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import com.pokedroid.editor.map.MapExporter;
 import com.pokedroid.editor.map.TileMap;
 import com.pokedroid.editor.map.TileSet;
 
@@ -210,6 +211,27 @@ public class Story {
 		}
 	}
 
+	/**
+	 * <p>Exports every map in the binary map format into a directory.</p>
+	 *
+	 * @param dir The directory.
+	 * @return The amount of maps exported.
+	 */
+	public int exportMaps(File dir) {
+		if(!dir.exists())
+			dir.mkdirs();
+		int count = 0;
+		for(String key : maps.keySet()) {
+			try {
+				MapExporter.export(maps.get(key), dir);
+				count++;
+			} catch (IOException e) {
+				System.err.println("[Story] Unable to export map " + key + ": " + e.getMessage());
+			}
+		}
+		return count;
+	}
+
 	private void delete(File dir, String[] ext) {
 		for(File f : dir.listFiles()) {
 			if(f.isDirectory()) {
@@ -33,7 +33,7 @@ public class EditorMenuBar extends JMenuBar implements ActionListener {
 	private MainGUI mainGUI;
 	private JMenu jmFile, jmHelp;
 	private JMenuItem jmiNewStory, jmiLoadStory;
-	private JMenuItem jmiNewMap, jmiSaveStory, jmiPreferences, jmiQuit, jmiAbout;
+	private JMenuItem jmiNewMap, jmiSaveStory, jmiExportMaps, jmiPreferences, jmiQuit, jmiAbout;
 	private WebFileChooser fileChooser;
 
 	/**
@@ -58,6 +58,8 @@ public class EditorMenuBar extends JMenuBar implements ActionListener {
 			this.jmFile.addSeparator();
 			this.jmiSaveStory = createItem(new JMenuItem("Save Story"));
 			this.jmFile.add(jmiSaveStory);
+			this.jmiExportMaps = createItem(new JMenuItem("Export Maps"));
+			this.jmFile.add(jmiExportMaps);
 			this.jmFile.addSeparator();
 			this.jmiPreferences = createItem(new JMenuItem("Preferences"));
 			this.jmFile.add(jmiPreferences);
@@ -115,6 +117,15 @@ public class EditorMenuBar extends JMenuBar implements ActionListener {
 			if(mainGUI.getStory() == null)
 				return;
 			mainGUI.getStory().save();
+		} else if(e.getSource() == jmiExportMaps) {
+			if(mainGUI.getStory() == null)
+				return;
+			fileChooser = new WebFileChooser("./");
+			fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+			if (fileChooser.showSaveDialog(mainGUI) == WebFileChooser.APPROVE_OPTION) {
+				int count = mainGUI.getStory().exportMaps(fileChooser.getSelectedFile());
+				JOptionPane.showMessageDialog(mainGUI, "Exported " + count + " maps.");
+			}
 		} else if (e.getSource() == jmiNewMap) {
 			new NewMapDialog(mainGUI);
 		} else if (e.getSource() == jmiAbout) {
@@ -0,0 +1,125 @@
+package com.pokedroid.editor.map;
+
+/**
+ * <p>
+ * {@code LayerEncoding} writes and reads the tiles of a map layer as a single
+ * string instead of an array of numbers, which is much smaller for layers that
+ * are mostly long runs of the same tile.
+ * </p>
+ *
+ * <p>
+ * The string starts with the name of the encoding and a colon, followed by runs
+ * separated by commas. A run is either a single value or a count and a value
+ * joined by {@code *}, so {@code "rle:3*5,-1,2*7"} is the tiles
+ * {@code 5,5,5,-1,7,7}. With {@link LayerEncoding#RLE} each value is a tile,
+ * with {@link LayerEncoding#DELTA} each value is the difference from the tile
+ * before it starting from {@code -1}.
+ * </p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public final class LayerEncoding {
+	public static final String RLE = "rle", DELTA = "delta";
+
+	private LayerEncoding() {
+	}
+
+	/**
+	 * <p>
+	 * Encodes the tiles of a layer.
+	 * </p>
+	 *
+	 * @param tiles
+	 *            The tiles of the layer.
+	 * @param encoding
+	 *            The encoding, {@link LayerEncoding#RLE} or
+	 *            {@link LayerEncoding#DELTA}.
+	 * @return The encoded layer.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown if the encoding is unknown.
+	 */
+	public static String encode(TileStorage tiles, String encoding) {
+		boolean delta;
+		if (RLE.equals(encoding))
+			delta = false;
+		else if (DELTA.equals(encoding))
+			delta = true;
+		else
+			throw new IllegalArgumentException("unknown layer encoding " + encoding);
+		StringBuilder str = new StringBuilder(encoding).append(':');
+		int previous = -1, runValue = 0, runLength = 0;
+		for (int i = 0; i < tiles.size(); i++) {
+			int tile = tiles.get(i);
+			int value = delta ? tile - previous : tile;
+			previous = tile;
+			if (runLength > 0 && value == runValue) {
+				runLength++;
+				continue;
+			}
+			appendRun(str, runLength, runValue);
+			runValue = value;
+			runLength = 1;
+		}
+		appendRun(str, runLength, runValue);
+		return str.toString();
+	}
+
+	private static void appendRun(StringBuilder str, int runLength, int value) {
+		if (runLength == 0)
+			return;
+		if (str.charAt(str.length() - 1) != ':')
+			str.append(',');
+		if (runLength > 1)
+			str.append(runLength).append('*');
+		str.append(value);
+	}
+
+	/**
+	 * <p>
+	 * Decodes the tiles of an encoded layer.
+	 * </p>
+	 *
+	 * @param encoded
+	 *            The encoded layer.
+	 * @param count
+	 *            The amount of tiles the layer holds.
+	 * @return The tiles.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown if the layer is not encoded correctly or does not hold
+	 *             {@code count} tiles.
+	 */
+	public static int[] decode(String encoded, int count) {
+		int colon = encoded.indexOf(':');
+		if (colon == -1)
+			throw new IllegalArgumentException("layer has no encoding");
+		String encoding = encoded.substring(0, colon);
+		if (!encoding.equals(RLE) && !encoding.equals(DELTA))
+			throw new IllegalArgumentException("unknown layer encoding " + encoding);
+		boolean delta = encoding.equals(DELTA);
+		int[] tiles = new int[count];
+		int written = 0, previous = -1;
+		for (String run : encoded.substring(colon + 1).split(",")) {
+			run = run.trim();
+			if (run.isEmpty())
+				continue;
+			int star = run.indexOf('*');
+			int runLength = (star == -1) ? 1 : Integer.parseInt(run.substring(0, star).trim());
+			int value = Integer.parseInt(run.substring(star + 1).trim());
+			if (written + runLength > count)
+				throw new IllegalArgumentException("encoded layer holds more than " + count + " tiles");
+			for (int i = 0; i < runLength; i++) {
+				previous = delta ? previous + value : value;
+				tiles[written++] = previous;
+			}
+		}
+		if (written != count)
+			throw new IllegalArgumentException("encoded layer holds " + written + " tiles instead of " + count);
+		return tiles;
+	}
+
+}
@@ -23,8 +23,9 @@ public class TileMap {
 
 	private String name;
 	private int width, height, layerCount;
-	private int[][] tiles;
+	private TileStorage[] tiles;
 	private TileSet tileSet;
+	private JSONObject properties;
 
 	/**
 	 * <p>
@@ -46,12 +47,10 @@ public class TileMap {
 		this.width = width;
 		this.height = height;
 		this.layerCount = STANDARD_COUNT;
-		this.tiles = new int[layerCount][width * height];
-		for (int l = 0; l < tiles.length; l++) {
-			for (int i = 0; i < tiles[l].length; i++) {
-				this.tiles[l][i] = -1;
-			}
-		}
+		this.properties = new JSONObject();
+		this.tiles = new TileStorage[layerCount];
+		for (int l = 0; l < tiles.length; l++)
+			this.tiles[l] = TileStorage.create(width * height, tileSet.length() - 1);
 	}
 
 	/**
@@ -72,13 +71,49 @@ public class TileMap {
 		this.width = o.getInt("width");
 		this.height = o.getInt("height");
 		this.layerCount = o.getInt("layers");
-		this.tiles = new int[layerCount][width * height];
+		this.tileSet = tilesets.get(o.getString("tileset"));
+		// The id offset is applied to the tiles below so it is not kept.
+		this.properties = new JSONObject();
+		for (String key : o.keySet()) {
+			if (!key.equals("tiles") && !key.equals("id_offset"))
+				properties.put(key, o.get(key));
+		}
 		JSONArray tileArray = o.getJSONArray("tiles");
+		int idOffset = o.optInt("id_offset", 0);
+		int maxTile = (tileSet == null) ? 0 : tileSet.length() - 1;
+		int[][] layers = new int[tileArray.length()][];
 		for (int i = 0; i < tileArray.length(); i++) {
-			for (int j = 0; j < tileArray.getJSONArray(i).length(); j++)
-				tiles[i][j] = tileArray.getJSONArray(i).getInt(j) + o.optInt("id_offset", 0);
+			layers[i] = readLayer(tileArray.get(i));
+			for (int j = 0; j < layers[i].length; j++) {
+				layers[i][j] += idOffset;
+				maxTile = Math.max(maxTile, layers[i][j]);
+			}
 		}
-		this.tileSet = tilesets.get(o.getString("tileset"));
+		this.tiles = new TileStorage[layerCount];
+		for (int i = 0; i < layerCount; i++)
+			this.tiles[i] = TileStorage.create(width * height, maxTile);
+		for (int i = 0; i < layers.length; i++)
+			tiles[i].set(0, layers[i], 0, layers[i].length);
+	}
+
+	/**
+	 * <p>
+	 * Reads the tiles of a layer that is either an array or a string written
+	 * with a {@link LayerEncoding}.
+	 * </p>
+	 *
+	 * @param layer
+	 *            The layer from the JSON.
+	 * @return The tiles of the layer.
+	 */
+	private int[] readLayer(Object layer) {
+		if (layer instanceof String)
+			return LayerEncoding.decode((String) layer, width * height);
+		JSONArray array = (JSONArray) layer;
+		int[] tiles = new int[array.length()];
+		for (int i = 0; i < tiles.length; i++)
+			tiles[i] = array.getInt(i);
+		return tiles;
 	}
 
 	/**
@@ -94,9 +129,10 @@ public class TileMap {
 	public void render(Graphics g, int layer) {
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
-				if (tiles[layer][x + (y * width)] < 0)
+				int tile = tiles[layer].get(x + (y * width));
+				if (tile < 0)
 					continue;
-				g.drawImage(tileSet.getTile(tiles[layer][x + (y * width)]), x * tileSet.getWidth(),
+				g.drawImage(tileSet.getTile(tile), x * tileSet.getWidth(),
 						y * tileSet.getHeight(), null);
 			}
 		}
@@ -110,6 +146,22 @@ public class TileMap {
 	 * @return The {@code TileMap} as a JSON string.
 	 */
 	public String toJSON() {
+		return toJSON(null);
+	}
+
+	/**
+	 * <p>
+	 * Gets the {@code TileMap} as a JSON string with each layer written using
+	 * a {@link LayerEncoding}.
+	 * </p>
+	 * 
+	 * @param encoding
+	 *            The encoding, {@link LayerEncoding#RLE},
+	 *            {@link LayerEncoding#DELTA} or {@code null} to write each
+	 *            layer as an array.
+	 * @return The {@code TileMap} as a JSON string.
+	 */
+	public String toJSON(String encoding) {
 		StringBuilder str = new StringBuilder();
 		str.append("{\n");
 		str.append("  \"name\": \"" + this.name + "\",\n");
@@ -119,10 +171,15 @@ public class TileMap {
 		str.append("  \"layers\": " + this.layerCount + ",\n");
 		str.append("  \"tiles\": [\n");
 		for (int l = 0; l < this.tiles.length; l++) {
-			str.append("    [");
-			for (int i = 0; i < this.tiles[l].length; i++)
-				str.append(this.tiles[l][i] + (i == this.tiles[l].length - 1 ? "" : ", "));
-			str.append("]" + (l == this.tiles.length - 1 ? "" : ",") + "\n");
+			if (encoding != null) {
+				str.append("    \"" + LayerEncoding.encode(this.tiles[l], encoding) + "\"");
+			} else {
+				str.append("    [");
+				for (int i = 0; i < this.tiles[l].size(); i++)
+					str.append(this.tiles[l].get(i) + (i == this.tiles[l].size() - 1 ? "" : ", "));
+				str.append("]");
+			}
+			str.append((l == this.tiles.length - 1 ? "" : ",") + "\n");
 		}
 		str.append("  ]\n");
 		str.append("}");
@@ -157,14 +214,17 @@ public class TileMap {
 	 * 
 	 * @throws ArrayIndexOutOfBoundsException
 	 *             Thrown if the tile index is out of bounds.
+	 * @throws IllegalArgumentException
+	 *             Thrown if the tile id is below {@code -1}.
 	 */
 	public int setTile(int l, int i, int tileId) {
 		if (l < 0 || l >= tiles.length)
 			throw new ArrayIndexOutOfBoundsException(l);
-		if (i < 0 || i >= tiles[l].length)
+		if (i < 0 || i >= tiles[l].size())
 			throw new ArrayIndexOutOfBoundsException(i);
-		int oldId = tiles[l][i];
-		tiles[l][i] = tileId;
+		int oldId = tiles[l].get(i);
+		tiles[l] = TileStorage.widen(tiles[l], tileId);
+		tiles[l].set(i, tileId);
 		return oldId;
 	}
 
@@ -214,9 +274,9 @@ public class TileMap {
 	public int getTile(int l, int i) {
 		if (l < 0 || l >= tiles.length)
 			throw new ArrayIndexOutOfBoundsException(l);
-		if (i < 0 || i >= tiles[l].length)
+		if (i < 0 || i >= tiles[l].size())
 			throw new ArrayIndexOutOfBoundsException(i);
-		return tiles[l][i];
+		return tiles[l].get(i);
 	}
 
 	/**
@@ -245,6 +305,157 @@ public class TileMap {
 		return getTile(l, x + (y * width));
 	}
 
+	/**
+	 * <p>
+	 * Copies a rectangle of tiles on layer l into an array, row by row
+	 * starting with the row at y. The bounds are checked once for the whole
+	 * region.
+	 * </p>
+	 * 
+	 * @param l
+	 *            The layer the tiles belong to.
+	 * @param x
+	 *            The first x coordinate.
+	 * @param y
+	 *            The first y coordinate.
+	 * @param w
+	 *            The width of the region.
+	 * @param h
+	 *            The height of the region.
+	 * @param dst
+	 *            The array to copy to, empty tiles are {@code -1}.
+	 * @param offset
+	 *            The index in {@code dst} to copy to.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             Thrown if the layer is out of bounds or the array is too
+	 *             small.
+	 * @throws InvalidTileException
+	 *             Thrown if the region is out of the width or height.
+	 */
+	public void getRegion(int l, int x, int y, int w, int h, int[] dst, int offset) {
+		checkRegion(l, l + 1, x, y, w, h, dst, offset);
+		for (int row = 0; row < h; row++)
+			tiles[l].get(x + ((y + row) * width), dst, offset + (row * w), w);
+	}
+
+	/**
+	 * <p>
+	 * Copies a rectangle of tiles on every layer into an array, the region of
+	 * each layer follows the one before it.
+	 * </p>
+	 * 
+	 * @param x
+	 *            The first x coordinate.
+	 * @param y
+	 *            The first y coordinate.
+	 * @param w
+	 *            The width of the region.
+	 * @param h
+	 *            The height of the region.
+	 * @param dst
+	 *            The array to copy to, it must hold {@code layers*w*h} tiles.
+	 * @param offset
+	 *            The index in {@code dst} to copy to.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             Thrown if the array is too small.
+	 * @throws InvalidTileException
+	 *             Thrown if the region is out of the width or height.
+	 */
+	public void getRegion(int x, int y, int w, int h, int[] dst, int offset) {
+		checkRegion(0, layerCount, x, y, w, h, dst, offset);
+		for (int l = 0; l < layerCount; l++)
+			getRegion(l, x, y, w, h, dst, offset + (l * w * h));
+	}
+
+	/**
+	 * <p>
+	 * Sets a rectangle of tiles on layer l from an array, row by row starting
+	 * with the row at y.
+	 * </p>
+	 * 
+	 * @param l
+	 *            The layer the tiles belong to.
+	 * @param x
+	 *            The first x coordinate.
+	 * @param y
+	 *            The first y coordinate.
+	 * @param w
+	 *            The width of the region.
+	 * @param h
+	 *            The height of the region.
+	 * @param src
+	 *            The array to copy from, empty tiles are {@code -1}.
+	 * @param offset
+	 *            The index in {@code src} to copy from.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             Thrown if the layer is out of bounds or the array is too
+	 *             small.
+	 * @throws InvalidTileException
+	 *             Thrown if the region is out of the width or height.
+	 * @throws IllegalArgumentException
+	 *             Thrown if a tile is below {@code -1}.
+	 */
+	public void setRegion(int l, int x, int y, int w, int h, int[] src, int offset) {
+		checkRegion(l, l + 1, x, y, w, h, src, offset);
+		int maxTile = -1;
+		for (int j = offset; j < offset + (w * h); j++)
+			maxTile = Math.max(maxTile, src[j]);
+		tiles[l] = TileStorage.widen(tiles[l], maxTile);
+		for (int row = 0; row < h; row++)
+			tiles[l].set(x + ((y + row) * width), src, offset + (row * w), w);
+	}
+
+	/**
+	 * <p>
+	 * Sets a rectangle of tiles on every layer from an array laid out like
+	 * {@link TileMap#getRegion(int, int, int, int, int[], int)}.
+	 * </p>
+	 * 
+	 * @param x
+	 *            The first x coordinate.
+	 * @param y
+	 *            The first y coordinate.
+	 * @param w
+	 *            The width of the region.
+	 * @param h
+	 *            The height of the region.
+	 * @param src
+	 *            The array to copy from, it must hold {@code layers*w*h}
+	 *            tiles.
+	 * @param offset
+	 *            The index in {@code src} to copy from.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             Thrown if the array is too small.
+	 * @throws InvalidTileException
+	 *             Thrown if the region is out of the width or height.
+	 * @throws IllegalArgumentException
+	 *             Thrown if a tile is below {@code -1}.
+	 */
+	public void setRegion(int x, int y, int w, int h, int[] src, int offset) {
+		checkRegion(0, layerCount, x, y, w, h, src, offset);
+		for (int l = 0; l < layerCount; l++)
+			setRegion(l, x, y, w, h, src, offset + (l * w * h));
+	}
+
+	/**
+	 * <p>
+	 * Checks that a range of layers and a region are within the map and that
+	 * an array can hold the region on every layer in the range.
+	 * </p>
+	 */
+	private void checkRegion(int firstLayer, int endLayer, int x, int y, int w, int h, int[] array, int offset) {
+		if (firstLayer < 0 || endLayer > tiles.length)
+			throw new ArrayIndexOutOfBoundsException(firstLayer);
+		if (w < 0 || h < 0 || !isValid(x, y) || x + w > width || y + h > height)
+			throw new InvalidTileException(x, y);
+		if (offset < 0 || offset + ((long) (endLayer - firstLayer) * w * h) > array.length)
+			throw new ArrayIndexOutOfBoundsException(offset);
+	}
+
 	/**
 	 * <p>
 	 * Whether the x and y location is a valid location.
@@ -272,7 +483,7 @@ public class TileMap {
 		Integer[][] snapshot = new Integer[layerCount][width * height];
 		for (int l = 0; l < layerCount; l++) {
 			for (int i = 0; i < snapshot[l].length; i++) {
-				snapshot[l][i] = tiles[l][i];
+				snapshot[l][i] = tiles[l].get(i);
 			}
 		}
 		return snapshot;
@@ -290,7 +501,7 @@ public class TileMap {
 	public void loadSnapshot(Integer[][] snapshot) {
 		for (int l = 0; l < layerCount; l++) {
 			for (int i = 0; i < snapshot[l].length; i++) {
-				tiles[l][i] = snapshot[l][i];
+				tiles[l].set(i, snapshot[l][i]);
 			}
 		}
 	}
@@ -350,6 +561,18 @@ public class TileMap {
 		return this.tileSet;
 	}
 
+	/**
+	 * <p>
+	 * Gets the fields the map was loaded with other than its tiles, such as
+	 * its connections and music.
+	 * </p>
+	 * 
+	 * @return The properties of the map.
+	 */
+	public JSONObject getProperties() {
+		return this.properties;
+	}
+
 	@Override
 	public String toString() {
 		return this.name;
@@ -0,0 +1,303 @@
+package com.pokedroid.editor.map;
+
+/**
+ * <p>
+ * A {@code TileStorage} is a fixed size array of tiles that is stored in the
+ * smallest primitive type that can hold every tile of a {@link TileSet}.
+ * </p>
+ *
+ * <p>
+ * Tiles are stored one higher than their id so that an empty tile
+ * ({@code -1}) is stored as {@code 0}.
+ * </p>
+ *
+ * @author PoketronHacker
+ * @version v1.0
+ * @since v1.0
+ *
+ */
+public abstract class TileStorage {
+	public static final int BYTE_MAX_TILE = 0xFE, CHAR_MAX_TILE = 0xFFFE, INT_MAX_TILE = Integer.MAX_VALUE - 1;
+
+	/**
+	 * <p>
+	 * Creates an empty {@code TileStorage} using the smallest type that can
+	 * hold a tile id.
+	 * </p>
+	 *
+	 * @param size
+	 *            The amount of tiles.
+	 * @param maxTile
+	 *            The highest tile id that will be stored.
+	 * @return The new {@code TileStorage}.
+	 */
+	public static TileStorage create(int size, int maxTile) {
+		if (maxTile <= BYTE_MAX_TILE)
+			return new ByteStorage(size);
+		if (maxTile <= CHAR_MAX_TILE)
+			return new CharStorage(size);
+		return new IntStorage(size);
+	}
+
+	/**
+	 * <p>
+	 * Copies a {@code TileStorage} into one wide enough to hold a tile id,
+	 * returning the storage unchanged if it can already hold it.
+	 * </p>
+	 *
+	 * @param storage
+	 *            The storage to widen.
+	 * @param maxTile
+	 *            The highest tile id that will be stored.
+	 * @return A {@code TileStorage} holding the same tiles.
+	 */
+	public static TileStorage widen(TileStorage storage, int maxTile) {
+		if (maxTile <= storage.getMaxTile())
+			return storage;
+		int[] copy = new int[storage.size()];
+		storage.get(0, copy, 0, copy.length);
+		TileStorage wider = create(copy.length, maxTile);
+		wider.set(0, copy, 0, copy.length);
+		return wider;
+	}
+
+	/**
+	 * <p>
+	 * Gets the tile at an index.
+	 * </p>
+	 *
+	 * @param i
+	 *            The index.
+	 * @return The tile, or {@code -1} if empty.
+	 */
+	public abstract int get(int i);
+
+	/**
+	 * <p>
+	 * Sets the tile at an index.
+	 * </p>
+	 *
+	 * @param i
+	 *            The index.
+	 * @param tile
+	 *            The tile, or {@code -1} for empty.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown if the tile is too large for the storage.
+	 */
+	public abstract void set(int i, int tile);
+
+	/**
+	 * <p>
+	 * Copies a run of tiles into an array.
+	 * </p>
+	 *
+	 * @param i
+	 *            The index of the first tile.
+	 * @param dst
+	 *            The array to copy to, empty tiles are {@code -1}.
+	 * @param offset
+	 *            The index in {@code dst} to copy to.
+	 * @param length
+	 *            The amount of tiles.
+	 */
+	public abstract void get(int i, int[] dst, int offset, int length);
+
+	/**
+	 * <p>
+	 * Copies a run of tiles from an array.
+	 * </p>
+	 *
+	 * @param i
+	 *            The index of the first tile.
+	 * @param src
+	 *            The array to copy from, empty tiles are {@code -1}.
+	 * @param offset
+	 *            The index in {@code src} to copy from.
+	 * @param length
+	 *            The amount of tiles.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown if a tile is too large for the storage.
+	 */
+	public abstract void set(int i, int[] src, int offset, int length);
+
+	/**
+	 * <p>
+	 * Gets the amount of tiles held.
+	 * </p>
+	 *
+	 * @return The amount of tiles.
+	 */
+	public abstract int size();
+
+	/**
+	 * <p>
+	 * Gets the highest tile id this storage can hold.
+	 * </p>
+	 *
+	 * @return The highest tile id.
+	 */
+	public abstract int getMaxTile();
+
+	/**
+	 * <p>
+	 * Checks that a tile can be held by this storage.
+	 * </p>
+	 *
+	 * @param tile
+	 *            The tile.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown if the tile is too large or below {@code -1}.
+	 */
+	protected void checkTile(int tile) {
+		if (tile < -1 || tile > getMaxTile())
+			throw new IllegalArgumentException("tile " + tile + " is higher than " + getMaxTile());
+	}
+
+	/**
+	 * <p>
+	 * A {@code TileStorage} for up to {@link TileStorage#BYTE_MAX_TILE} tiles.
+	 * </p>
+	 */
+	private static final class ByteStorage extends TileStorage {
+		private final byte[] tiles;
+
+		ByteStorage(int size) {
+			this.tiles = new byte[size];
+		}
+
+		@Override
+		public int get(int i) {
+			return (tiles[i] & 0xFF) - 1;
+		}
+
+		@Override
+		public void set(int i, int tile) {
+			checkTile(tile);
+			tiles[i] = (byte) (tile + 1);
+		}
+
+		@Override
+		public void get(int i, int[] dst, int offset, int length) {
+			for (int j = 0; j < length; j++)
+				dst[offset + j] = (tiles[i + j] & 0xFF) - 1;
+		}
+
+		@Override
+		public void set(int i, int[] src, int offset, int length) {
+			for (int j = 0; j < length; j++) {
+				checkTile(src[offset + j]);
+				tiles[i + j] = (byte) (src[offset + j] + 1);
+			}
+		}
+
+		@Override
+		public int size() {
+			return tiles.length;
+		}
+
+		@Override
+		public int getMaxTile() {
+			return BYTE_MAX_TILE;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A {@code TileStorage} for up to {@link TileStorage#CHAR_MAX_TILE} tiles.
+	 * </p>
+	 */
+	private static final class CharStorage extends TileStorage {
+		private final char[] tiles;
+
+		CharStorage(int size) {
+			this.tiles = new char[size];
+		}
+
+		@Override
+		public int get(int i) {
+			return tiles[i] - 1;
+		}
+
+		@Override
+		public void set(int i, int tile) {
+			checkTile(tile);
+			tiles[i] = (char) (tile + 1);
+		}
+
+		@Override
+		public void get(int i, int[] dst, int offset, int length) {
+			for (int j = 0; j < length; j++)
+				dst[offset + j] = tiles[i + j] - 1;
+		}
+
+		@Override
+		public void set(int i, int[] src, int offset, int length) {
+			for (int j = 0; j < length; j++) {
+				checkTile(src[offset + j]);
+				tiles[i + j] = (char) (src[offset + j] + 1);
+			}
+		}
+
+		@Override
+		public int size() {
+			return tiles.length;
+		}
+
+		@Override
+		public int getMaxTile() {
+			return CHAR_MAX_TILE;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A {@code TileStorage} for any amount of tiles.
+	 * </p>
+	 */
+	private static final class IntStorage extends TileStorage {
+		private final int[] tiles;
+
+		IntStorage(int size) {
+			this.tiles = new int[size];
+		}
+
+		@Override
+		public int get(int i) {
+			return tiles[i] - 1;
+		}
+
+		@Override
+		public void set(int i, int tile) {
+			checkTile(tile);
+			tiles[i] = tile + 1;
+		}
+
+		@Override
+		public void get(int i, int[] dst, int offset, int length) {
+			for (int j = 0; j < length; j++)
+				dst[offset + j] = tiles[i + j] - 1;
+		}
+
+		@Override
+		public void set(int i, int[] src, int offset, int length) {
+			for (int j = 0; j < length; j++) {
+				checkTile(src[offset + j]);
+				tiles[i + j] = src[offset + j] + 1;
+			}
+		}
+
+		@Override
+		public int size() {
+			return tiles.length;
+		}
+
+		@Override
+		public int getMaxTile() {
+			return INT_MAX_TILE;
+		}
+	}
+
+}